@@ -0,0 +1,92 @@
+package ru.ingredients.decoding;
+
+import ru.ingredients.category.CategoryDTO;
+import ru.ingredients.category.CategoryDirectory;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.util.*;
+
+/**
+ * Синтетический каталог и составы для бенчмарков: наименования из нескольких слов, как INCI,
+ * у каждого ингредиента торговое наименование, два других и одна-три категории.
+ * Генератор с фиксированным зерном, поэтому данные одинаковы от запуска к запуску.
+ */
+final class BenchmarkCatalog {
+
+    static final int CATEGORIES = 40;
+
+    // доля нераспознанных наименований в составе
+    private static final double UNKNOWN_SHARE = 0.1;
+
+    private static final String[] WORDS = {
+            "sodium", "laureth", "sulfate", "cetearyl", "alcohol", "glyceryl", "stearate", "peg", "hydrogenated",
+            "castor", "oil", "extract", "leaf", "seed", "butyrospermum", "parkii", "butter", "tocopheryl", "acetate",
+            "panthenol", "niacinamide", "dimethicone", "caprylic", "capric", "triglyceride", "citric", "acid",
+            "phenoxyethanol", "ethylhexylglycerin", "xanthan", "gum", "hyaluronate", "allantoin", "bisabolol"
+    };
+
+    final List<IngredientDTO> ingredients;
+    final CategoryDirectory categoryDirectory = new CategoryDirectory();
+
+    private final Random random = new Random(42);
+
+    BenchmarkCatalog(int size) {
+        List<CategoryDTO> categories = new ArrayList<>(CATEGORIES);
+        for (long id = 1; id <= CATEGORIES; id++) {
+            categories.add(new CategoryDTO(id, "Категория " + id));
+        }
+        categoryDirectory.registerAll(categories);
+
+        ingredients = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            Set<CategoryDTO> ingCategories = new LinkedHashSet<>();
+            for (int c = random.nextInt(3); c >= 0; c--) {
+                ingCategories.add(categories.get(random.nextInt(CATEGORIES)));
+            }
+            ingredients.add(new IngredientDTO()
+                    .setId(id)
+                    .setInci(name(id, ""))
+                    .setTradeName(name(id, "Trade "))
+                    .setOtherNames(new LinkedHashSet<>(List.of(name(id, "Other "), name(id, "Alias "))))
+                    .setCategories(ingCategories));
+        }
+    }
+
+    // номер в наименовании делает его уникальным, слова - похожим на настоящее по длине и составу символов
+    private String name(long id, String prefix) {
+        return prefix + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + "-" + id;
+    }
+
+    IngredientDictionary dictionary() {
+        // словарь заполняется напрямую, без загрузки из базы и подписчиков на изменения
+        IngredientDictionary dictionary = new IngredientDictionary(null, null, categoryDirectory, event -> {
+        });
+        dictionary.replaceAll(ingredients);
+        return dictionary;
+    }
+
+    /**
+     * count составов по length наименований через запятую, наименования берутся из каталога вперемешку
+     * INCI, торговые и другие, часть не распознается.
+     */
+    String[] compositions(int count, int length) {
+        String[] compositions = new String[count];
+        for (int c = 0; c < count; c++) {
+            StringJoiner composition = new StringJoiner(", ");
+            for (int i = 0; i < length; i++) {
+                if (random.nextDouble() < UNKNOWN_SHARE) {
+                    composition.add("Unknown extract " + random.nextInt(1_000_000));
+                    continue;
+                }
+                IngredientDTO ing = ingredients.get(random.nextInt(ingredients.size()));
+                composition.add(switch (random.nextInt(3)) {
+                    case 0 -> ing.getInci();
+                    case 1 -> ing.getTradeName();
+                    default -> ing.getOtherNames().iterator().next();
+                });
+            }
+            compositions[c] = composition.toString();
+        }
+        return compositions;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.ingredients.decoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ru.ingredients.utils.NormalizationUtils.normalize;
+
+/**
+ * Этапы DecodingService.decode на словаре в памяти: разбиение состава, нормализация наименований,
+ * поиск в снимке словаря и вся расшифровка целиком. Кэш расшифровки отключен (maximumWeight = 0),
+ * чтобы каждый вызов проходил поиск, а не возвращал готовый результат.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DecodingBenchmark {
+
+    // разные составы по кругу, чтобы не мерить один и тот же закэшированный в процессоре вход
+    private static final int COMPOSITIONS = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    private int dictionarySize;
+
+    @Param({"10", "30", "100"})
+    private int compositionLength;
+
+    private CompositionTokenizer compositionTokenizer;
+    private IngredientDictionary.Snapshot dictionary;
+    private DecodingService decodingService;
+
+    private String[] compositions;
+    private CompositionTokenizer.Tokens[] tokens;
+    private String[][] normalizedNames;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkCatalog catalog = new BenchmarkCatalog(dictionarySize);
+        IngredientDictionary ingredientDictionary = catalog.dictionary();
+        dictionary = ingredientDictionary.snapshot();
+        compositionTokenizer = new CompositionTokenizer(",;•·");
+        decodingService = new DecodingService(ingredientDictionary,
+                new DecodingCache(ingredientDictionary, DataSize.ofBytes(0), new SimpleMeterRegistry()),
+                compositionTokenizer, catalog.categoryDirectory, new DecodingMetrics(new SimpleMeterRegistry()),
+                Duration.ZERO);
+
+        compositions = catalog.compositions(COMPOSITIONS, compositionLength);
+        tokens = new CompositionTokenizer.Tokens[COMPOSITIONS];
+        normalizedNames = new String[COMPOSITIONS][];
+        for (int c = 0; c < COMPOSITIONS; c++) {
+            tokens[c] = compositionTokenizer.tokenize(compositions[c]);
+            normalizedNames[c] = new String[tokens[c].size()];
+            for (int i = 0; i < tokens[c].size(); i++) {
+                normalizedNames[c][i] = normalize(tokens[c].text(), tokens[c].start(i), tokens[c].end(i));
+            }
+        }
+    }
+
+    private int nextComposition() {
+        return next++ & (COMPOSITIONS - 1);
+    }
+
+    @Benchmark
+    public CompositionTokenizer.Tokens tokenize() {
+        return compositionTokenizer.tokenize(compositions[nextComposition()]);
+    }
+
+    @Benchmark
+    public String[] normalizeTokens() {
+        CompositionTokenizer.Tokens composition = tokens[nextComposition()];
+        String[] names = new String[composition.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = normalize(composition.text(), composition.start(i), composition.end(i));
+        }
+        return names;
+    }
+
+    @Benchmark
+    public IngredientDTO[] lookup() {
+        String[] names = normalizedNames[nextComposition()];
+        IngredientDTO[] found = new IngredientDTO[names.length];
+        for (int i = 0; i < names.length; i++) {
+            found[i] = dictionary.findByNormalizedName(names[i]);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<IngredientDTO> decode() {
+        return decodingService.decode(compositions[nextComposition()]);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.ingredients.decoding;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ingredients.ingredient.IngredientDTO;
+import ru.ingredients.ingredient.IngredientSavedEvent;
+import ru.ingredients.ingredient.IngredientsImportedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка нового снимка словаря после сохранения одного ингредиента и после порции загрузки (1000 строк,
+ * как IngredientImporter): время должно зависеть от размера изменения, а не от размера словаря.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DictionaryUpdateBenchmark {
+
+    private static final int CHUNK = 1000;
+
+    @Param({"10000", "100000"})
+    private int dictionarySize;
+
+    private IngredientDictionary ingredientDictionary;
+    private List<IngredientDTO> ingredients;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkCatalog catalog = new BenchmarkCatalog(dictionarySize);
+        ingredientDictionary = catalog.dictionary();
+        ingredients = catalog.ingredients;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ingredientDictionary.shutdown();
+    }
+
+    @Benchmark
+    public IngredientDictionary.Snapshot saveOne() {
+        ingredientDictionary.onSaved(new IngredientSavedEvent(ingredients.get(next++ % ingredients.size())));
+        return ingredientDictionary.snapshot();
+    }
+
+    @Benchmark
+    public IngredientDictionary.Snapshot importChunk() {
+        List<IngredientDTO> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < CHUNK; i++) {
+            chunk.add(ingredients.get(next++ % ingredients.size()));
+        }
+        ingredientDictionary.onImported(new IngredientsImportedEvent(chunk));
+        return ingredientDictionary.snapshot();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.ingredients.decoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Группировка распознанных ингредиентов состава по категориям (DecodingService.groupByCat):
+ * маски категорий берутся из снимка словаря, от размера словаря время не зависит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GroupByCatBenchmark {
+
+    private static final int DICTIONARY_SIZE = 10_000;
+    private static final int COMPOSITIONS = 256;
+
+    @Param({"10", "30", "100"})
+    private int compositionLength;
+
+    private DecodingService decodingService;
+    private List<IngredientDTO>[] found;
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        BenchmarkCatalog catalog = new BenchmarkCatalog(DICTIONARY_SIZE);
+        IngredientDictionary ingredientDictionary = catalog.dictionary();
+        decodingService = new DecodingService(ingredientDictionary,
+                new DecodingCache(ingredientDictionary, DataSize.ofMegabytes(64), new SimpleMeterRegistry()),
+                new CompositionTokenizer(",;•·"), catalog.categoryDirectory,
+                new DecodingMetrics(new SimpleMeterRegistry()), Duration.ZERO);
+
+        // как в DecodingController: группируются только распознанные ингредиенты
+        String[] compositions = catalog.compositions(COMPOSITIONS, compositionLength);
+        found = new List[COMPOSITIONS];
+        for (int c = 0; c < COMPOSITIONS; c++) {
+            found[c] = decodingService.decode(compositions[c]).stream().filter(i -> i.getInci() != null).toList();
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<IngredientDTO>> groupByCat() {
+        return decodingService.groupByCat(found[next++ & (COMPOSITIONS - 1)]);
+    }
+}
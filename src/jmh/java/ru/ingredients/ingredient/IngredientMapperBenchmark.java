@@ -0,0 +1,63 @@
+package ru.ingredients.ingredient;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.ingredients.category.Category;
+import ru.ingredients.category.CategoryMapperImpl;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка IngredientDTO из сущности (IngredientMapper.toDto) в зависимости от числа других наименований
+ * и категорий: копируются обе коллекции, категории - через CategoryMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IngredientMapperBenchmark {
+
+    @Param({"0", "5", "20"})
+    private int otherNames;
+
+    @Param({"1", "5"})
+    private int categories;
+
+    private AnnotationConfigApplicationContext context;
+    private IngredientMapper ingredientMapper;
+    private Ingredient ingredient;
+
+    @Setup
+    public void setUp() {
+        // сгенерированный маппер получает CategoryMapper внедрением поля, поэтому собираем их в контексте
+        context = new AnnotationConfigApplicationContext(IngredientMapperImpl.class, CategoryMapperImpl.class);
+        ingredientMapper = context.getBean(IngredientMapper.class);
+
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < otherNames; i++) {
+            names.add("Other name " + i);
+        }
+        Set<Category> ingCategories = new HashSet<>();
+        for (long id = 1; id <= categories; id++) {
+            ingCategories.add(new Category().setId(id).setName("Категория " + id));
+        }
+        ingredient = new Ingredient()
+                .setId(1L)
+                .setInci("Butyrospermum Parkii Butter")
+                .setTradeName("Shea butter")
+                .setDescription("Масло ши")
+                .setOtherNames(names)
+                .setCategories(ingCategories);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public IngredientDTO toDto() {
+        return ingredientMapper.toDto(ingredient);
+    }
+}
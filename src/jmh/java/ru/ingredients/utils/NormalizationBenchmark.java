@@ -0,0 +1,43 @@
+package ru.ingredients.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нормализация одного наименования: уже нормализованное, обычное и длинное со скобками.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NormalizationBenchmark {
+
+    @Param({
+            "aqua",
+            "Sodium Laureth Sulfate",
+            "PEG-40 Hydrogenated Castor Oil (and) Trideceth-9 (and) Propylene Glycol (растворитель)"
+    })
+    private String name;
+
+    // то же наименование внутри строки состава, для нормализации без копии подстроки
+    private String composition;
+    private int start;
+    private int end;
+
+    @Setup
+    public void setUp() {
+        composition = "Aqua, " + name + ", Glycerin";
+        start = composition.indexOf(name);
+        end = start + name.length();
+    }
+
+    @Benchmark
+    public String normalize() {
+        return NormalizationUtils.normalize(name);
+    }
+
+    @Benchmark
+    public String normalizeRegion() {
+        return NormalizationUtils.normalize(composition, start, end);
+    }
+}
@@ -0,0 +1,50 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import ru.ingredients.utils.NormalizationUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Заполняет ingredient_normalized_names для уже существующих ингредиентов.
+ * Нормализация выполняется в Java тем же NormalizationUtils.normalize, что и при сохранении,
+ * чтобы значения в БД совпадали с приложением.
+ */
+public class V3__Backfill_ingredient_normalized_names extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement select = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement("""
+                     INSERT INTO ingredient_normalized_names (ingredient_id, normalized_name)
+                     VALUES (?, ?)
+                     ON CONFLICT DO NOTHING
+                     """)) {
+            select.setFetchSize(BATCH_SIZE);
+            ResultSet rs = select.executeQuery("""
+                    SELECT id, inci AS name FROM ingredient
+                    UNION ALL
+                    SELECT id, trade_name FROM ingredient
+                    UNION ALL
+                    SELECT ingredient_id, other_names FROM ingredient_other_names
+                    """);
+            int batched = 0;
+            while (rs.next()) {
+                String normalized = NormalizationUtils.normalize(rs.getString("name"));
+                if (normalized.isEmpty()) continue;
+                insert.setLong(1, rs.getLong("id"));
+                insert.setString(2, normalized);
+                insert.addBatch();
+                if (++batched % BATCH_SIZE == 0) insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+}
@@ -4,10 +4,14 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Objects;
 
+// категории приложение только читает, поэтому они кэшируются без блокировок
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Category {
 
     @Id
@@ -0,0 +1,110 @@
+package ru.ingredients.category;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Плотные номера категорий 0, 1, 2... для хранения категорий ингредиента в битовой маске.
+ * Номера только добавляются и не меняются, поэтому маски, посчитанные раньше, остаются верными.
+ * Справочник пополняется только списком категорий из БД (CategoryService.getAllCategories):
+ * категории из DTO ингредиентов могут быть устаревшими и его не меняют.
+ */
+@Component
+public class CategoryDirectory {
+
+    private volatile State state = State.of(new CategoryDTO[0], new HashMap<>());
+
+    public State state() {
+        return state;
+    }
+
+    // номер категории или -1, если ее нет в справочнике
+    public int indexOf(CategoryDTO category) {
+        Integer index = state.indexById.get(category.getId());
+        return index == null ? -1 : index;
+    }
+
+    // категория с таким id из справочника или null, если она еще не встречалась
+    public CategoryDTO findById(long id) {
+        State current = state;
+        Integer index = current.indexById.get(id);
+        return index == null ? null : current.categories[index];
+    }
+
+    // новые категории получают следующие свободные номера, переименованные сохраняют свой
+    public synchronized void registerAll(Collection<CategoryDTO> categories) {
+        State current = state;
+        CategoryDTO[] registered = current.categories;
+        Map<Long, Integer> indexById = current.indexById;
+        boolean changed = false;
+        for (CategoryDTO category : categories) {
+            Integer index = indexById.get(category.getId());
+            if (index != null && Objects.equals(registered[index].getName(), category.getName())) continue;
+            if (!changed) {
+                registered = registered.clone();
+                indexById = new HashMap<>(indexById);
+                changed = true;
+            }
+            if (index == null) {
+                index = registered.length;
+                registered = Arrays.copyOf(registered, index + 1);
+                indexById.put(category.getId(), index);
+            }
+            registered[index] = new CategoryDTO(category.getId(), category.getName());
+        }
+        if (changed) state = State.of(registered, indexById);
+    }
+
+    // категории, которых нет в справочнике, в маску не попадают
+    public long[] bitsOf(Collection<CategoryDTO> categories) {
+        long[] bits = new long[0];
+        for (CategoryDTO category : categories) {
+            int index = indexOf(category);
+            if (index < 0) continue;
+            if (index >> 6 >= bits.length) bits = Arrays.copyOf(bits, (index >> 6) + 1);
+            bits[index >> 6] |= 1L << index;
+        }
+        return bits;
+    }
+
+    /**
+     * Неизменяемое состояние справочника: категории по номерам и порядок номеров по названию.
+     */
+    public static final class State {
+
+        private final CategoryDTO[] categories;
+        private final Map<Long, Integer> indexById;
+        private final int[] nameOrder;
+
+        private State(CategoryDTO[] categories, Map<Long, Integer> indexById, int[] nameOrder) {
+            this.categories = categories;
+            this.indexById = indexById;
+            this.nameOrder = nameOrder;
+        }
+
+        private static State of(CategoryDTO[] categories, Map<Long, Integer> indexById) {
+            Comparator<CategoryDTO> byName = Comparator.comparing(CategoryDTO::getName, Comparator.nullsLast(String::compareTo))
+                    .thenComparing(CategoryDTO::getId, Comparator.nullsLast(Long::compareTo));
+            int[] nameOrder = IntStream.range(0, categories.length).boxed()
+                    .sorted(Comparator.comparing(i -> categories[i], byName))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            return new State(categories, Collections.unmodifiableMap(indexById), nameOrder);
+        }
+
+        public int size() {
+            return categories.length;
+        }
+
+        public CategoryDTO get(int index) {
+            return categories[index];
+        }
+
+        // номер категории, которая стоит на месте position в порядке названий: в этом порядке выводятся группы
+        public int byNameAt(int position) {
+            return nameOrder[position];
+        }
+    }
+}
@@ -3,23 +3,38 @@ package ru.ingredients.category;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @Service
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
+    private final CategoryDirectory categoryDirectory;
 
-    public CategoryService(CategoryRepository categoryRepository, CategoryMapper categoryMapper) {
+    public CategoryService(CategoryRepository categoryRepository, CategoryMapper categoryMapper,
+                           CategoryDirectory categoryDirectory) {
         this.categoryRepository = categoryRepository;
         this.categoryMapper = categoryMapper;
+        this.categoryDirectory = categoryDirectory;
     }
 
     public List<CategoryDTO> getAllCategories() {
-        return categoryRepository.findAll().stream().map(categoryMapper::toDto).toList();
+        List<CategoryDTO> categories = categoryRepository.findAll().stream().map(categoryMapper::toDto).toList();
+        // заодно обновляем справочник: новые категории получают номера, переименованные - новые названия
+        categoryDirectory.registerAll(categories);
+        return categories;
     }
 
+    // вызывается для каждой выбранной в форме категории: ищем в справочнике в памяти,
+    // БД читаем один раз, только если такого id там еще нет
     public CategoryDTO getCategoryById(long id) {
-        return categoryRepository.findById(id).map(categoryMapper::toDto).orElseThrow();
+        CategoryDTO category = categoryDirectory.findById(id);
+        if (category == null) {
+            getAllCategories();
+            category = categoryDirectory.findById(id);
+        }
+        if (category == null) throw new NoSuchElementException();
+        return new CategoryDTO(category.getId(), category.getName());
     }
 }
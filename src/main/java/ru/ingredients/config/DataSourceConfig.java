@@ -0,0 +1,77 @@
+package ru.ingredients.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+
+/**
+ * Две базы: основная (spring.datasource) и реплика для чтения (datasource.replica).
+ * Транзакции readOnly читают с реплики, остальные запросы идут в основную базу.
+ * Чтения с реплики не наполняют кэш второго уровня (ReplicaCacheModeJpaDialect).
+ * Без datasource.replica.jdbc-url конфигурация не подключается и работает одна основная база.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.replica", name = "jdbc-url")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+        return new ReadYourWrites(primaryDataSource, replicaDataSource);
+    }
+
+    // JpaTransactionManager помечает соединение readOnly уже после того, как его запросил, поэтому
+    // настоящее соединение берется лениво, при первом запросе, когда признак транзакции уже известен
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+                                 ReadYourWrites readYourWrites) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource, readYourWrites));
+        return dataSource;
+    }
+
+    // заменяет адаптер по умолчанию (JpaBaseConfiguration.jpaVendorAdapter) ради диалекта, настройки те же
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties, ReadYourWrites readYourWrites) {
+        HibernateJpaDialect jpaDialect = new ReplicaCacheModeJpaDialect(readYourWrites);
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return jpaDialect;
+            }
+        };
+        adapter.setShowSql(properties.isShowSql());
+        if (properties.getDatabase() != null) adapter.setDatabase(properties.getDatabase());
+        if (properties.getDatabasePlatform() != null) adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        return adapter;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.ingredients.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.HibernateQueryMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+import ru.ingredients.decoding.DecodingMetrics;
+
+import java.util.List;
+
+/**
+ * Метрики сверх автоконфигурации Spring Boot (hikaricp.*, hibernate.*, http.server.requests),
+ * отдаются по /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // время отрисовки страницы расшифровки, этап render в decoding.stage
+    @Bean
+    public MappedInterceptor decodingRenderInterceptor(DecodingMetrics decodingMetrics) {
+        return new MappedInterceptor(new String[]{"/decoding"}, decodingMetrics.renderInterceptor());
+    }
+
+    // время каждого HQL-запроса (hibernate.query с тегом query), в дополнение к общим счетчикам hibernate.query.executions
+    @Bean
+    public MeterBinder hibernateQueryMetrics(EntityManagerFactory entityManagerFactory) {
+        return new HibernateQueryMetrics(entityManagerFactory.unwrap(SessionFactory.class), "entityManagerFactory", List.of());
+    }
+}
@@ -0,0 +1,90 @@
+package ru.ingredients.config;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import ru.ingredients.ingredient.IngredientDeletedEvent;
+import ru.ingredients.ingredient.IngredientSavedEvent;
+import ru.ingredients.ingredient.IngredientsImportedEvent;
+
+import javax.sql.DataSource;
+
+/**
+ * Чтение своих изменений при отставании реплики. После сохранения, загрузки или удаления ингредиентов
+ * в сессии запоминается позиция журнала (WAL) основной базы. Пока реплика не применила журнал до этой позиции,
+ * readOnly транзакции этой сессии идут в основную базу; остальные пользователи продолжают читать с реплики.
+ */
+public class ReadYourWrites {
+
+    static final String LAST_WRITE_LSN = ReadYourWrites.class.getName() + ".LAST_WRITE_LSN";
+    // решение принимается один раз на запрос, чтобы все его чтения шли в одну базу
+    static final String PRIMARY_REQUIRED = ReadYourWrites.class.getName() + ".PRIMARY_REQUIRED";
+
+    // на резервном сервере - последняя примененная позиция, на самостоятельной базе (локальная замена реплики) - текущая
+    private static final String REPLICA_CAUGHT_UP_QUERY = """
+            SELECT CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn() ELSE pg_current_wal_lsn() END
+                   >= CAST(? AS pg_lsn)
+            """;
+
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final JdbcTemplate replicaJdbcTemplate;
+
+    public ReadYourWrites(DataSource primary, DataSource replica) {
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(IngredientSavedEvent ignoredEvent) {
+        recordWrite();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImported(IngredientsImportedEvent ignoredEvent) {
+        recordWrite();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(IngredientDeletedEvent ignoredEvent) {
+        recordWrite();
+    }
+
+    // вызывается после фиксации транзакции, до ответа с редиректом, поэтому следующий запрос уже видит отметку
+    private void recordWrite() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return;
+        String lsn = primaryJdbcTemplate.queryForObject("SELECT CAST(pg_current_wal_lsn() AS text)", String.class);
+        attributes.setAttribute(LAST_WRITE_LSN, lsn, RequestAttributes.SCOPE_SESSION);
+        attributes.setAttribute(PRIMARY_REQUIRED, true, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * true, если текущий запрос должен читать из основной базы: в его сессии были изменения,
+     * которые реплика еще не применила. Вне HTTP-запроса - false.
+     */
+    public boolean isPrimaryRequired() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return false;
+        Boolean decided = (Boolean) attributes.getAttribute(PRIMARY_REQUIRED, RequestAttributes.SCOPE_REQUEST);
+        if (decided != null) return decided;
+        String lsn = (String) attributes.getAttribute(LAST_WRITE_LSN, RequestAttributes.SCOPE_SESSION);
+        boolean required = lsn != null && !replicaCaughtUp(lsn);
+        if (lsn != null && !required) {
+            // реплика догнала, дальше эта сессия читает с нее без проверок
+            attributes.removeAttribute(LAST_WRITE_LSN, RequestAttributes.SCOPE_SESSION);
+        }
+        attributes.setAttribute(PRIMARY_REQUIRED, required, RequestAttributes.SCOPE_REQUEST);
+        return required;
+    }
+
+    private boolean replicaCaughtUp(String lsn) {
+        try {
+            return Boolean.TRUE.equals(replicaJdbcTemplate.queryForObject(REPLICA_CAUGHT_UP_QUERY, Boolean.class, lsn));
+        } catch (DataAccessException e) {
+            // реплика недоступна: читаем из основной базы, отметку оставляем до следующего запроса
+            return false;
+        }
+    }
+}
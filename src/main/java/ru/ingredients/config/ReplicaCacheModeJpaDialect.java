@@ -0,0 +1,48 @@
+package ru.ingredients.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.sql.SQLException;
+
+/**
+ * Транзакции, читающие с реплики, берут данные из кэша второго уровня, но не кладут их туда (CacheMode.GET).
+ * Реплика может отставать: строка, прочитанная с нее сразу после изменения, вернула бы в общий кэш прежнее
+ * значение для всех пользователей, а регионы кэша без срока жизни. Наполняют кэш только чтения из основной базы.
+ * Выбор базы тот же, что у ReplicaRoutingDataSource (см. ReadYourWrites).
+ */
+class ReplicaCacheModeJpaDialect extends HibernateJpaDialect {
+
+    private final ReadYourWrites readYourWrites;
+
+    ReplicaCacheModeJpaDialect(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly() || readYourWrites.isPrimaryRequired()) return transactionData;
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previousCacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.GET);
+        return new ReplicaTransactionData(transactionData, session, previousCacheMode);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaTransactionData replica) {
+            replica.session().setCacheMode(replica.previousCacheMode());
+            transactionData = replica.delegate();
+        }
+        super.cleanupTransaction(transactionData);
+    }
+
+    private record ReplicaTransactionData(Object delegate, Session session, CacheMode previousCacheMode) {
+    }
+}
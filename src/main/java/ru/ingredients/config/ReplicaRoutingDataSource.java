@@ -0,0 +1,31 @@
+package ru.ingredients.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Источник соединений для readOnly транзакций: реплика, если только текущему пользователю
+ * не нужно увидеть свои изменения, до которых реплика еще не дошла (см. ReadYourWrites).
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    private final ReadYourWrites readYourWrites;
+
+    ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(replica);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return readYourWrites.isPrimaryRequired() ? PRIMARY : REPLICA;
+    }
+}
@@ -0,0 +1,84 @@
+package ru.ingredients.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ограничение загрузок multipart/form-data до разбора тела.
+ * Каталог для расшифровки (доступен без входа) ограничен пределом контейнера (spring.servlet.multipart)
+ * и числом одновременных расшифровок: лишний запрос получает 429 раньше, чем файл будет сохранен на диск.
+ * Остальные загрузки отклоняются по Content-Length с меньшим пределом. Фильтр стоит раньше
+ * HiddenHttpMethodFilter: тот читает параметр _method и этим запускает разбор multipart.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class UploadSizeFilter extends OncePerRequestFilter {
+
+    static final String CATALOG_UPLOAD_PATH = "/api/decoding/csv";
+
+    private final long maxRequestSize;
+    private final long maxCatalogSize;
+    private final Semaphore catalogPermits;
+
+    public UploadSizeFilter(@Value("${uploads.max-request-size:20MB}") DataSize maxRequestSize,
+                            @Value("${spring.servlet.multipart.max-request-size:50MB}") DataSize maxCatalogSize,
+                            @Value("${decoding.csv.max-concurrent:2}") int maxConcurrentCatalogs) {
+        this.maxRequestSize = maxRequestSize.toBytes();
+        this.maxCatalogSize = maxCatalogSize.toBytes();
+        this.catalogPermits = new Semaphore(maxConcurrentCatalogs);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // уже разобранный запрос (MultipartHttpServletRequest) проверять поздно и незачем
+        String contentType = request.getContentType();
+        return contentType == null || !contentType.toLowerCase().startsWith("multipart/")
+                || request instanceof MultipartHttpServletRequest;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        // без Content-Length (chunked) размер заранее не проверить, такую загрузку не принимаем
+        if (length < 0) {
+            response.sendError(HttpStatus.LENGTH_REQUIRED.value());
+            return;
+        }
+        boolean catalog = request.getRequestURI().substring(request.getContextPath().length()).equals(CATALOG_UPLOAD_PATH);
+        long limit = catalog ? maxCatalogSize : maxRequestSize;
+        if (length > limit) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                    "Размер загрузки больше " + DataSize.ofBytes(limit).toMegabytes() + " МБ");
+            return;
+        }
+        if (!catalog) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // разрешение держится, пока каталог разбирается, расшифровывается и пишется в ответ
+        if (!catalogPermits.tryAcquire()) {
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(),
+                    "Сейчас расшифровываются другие каталоги, повторите позже");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            catalogPermits.release();
+        }
+    }
+}
@@ -2,10 +2,14 @@ package ru.ingredients.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.annotation.web.configurers.LogoutConfigurer;
+import org.springframework.security.config.annotation.web.configurers.RequestCacheConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 
 import static org.springframework.security.config.Customizer.withDefaults;
@@ -14,15 +18,46 @@ import static org.springframework.security.config.Customizer.withDefaults;
 @EnableWebSecurity
 public class WebSecurityConfig {
 
+    // расшифровка не требует входа: без сессии, CSRF и сохранения запроса для редиректа после логина
+    @Bean
+    @Order(1)
+    public SecurityFilterChain decodingSecurityFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher("/decoding", "/api/decoding/**")
+                .authorizeHttpRequests((requests) -> requests
+                        .anyRequest().permitAll())
+                .csrf(AbstractHttpConfigurer::disable)
+                .requestCache(RequestCacheConfigurer::disable)
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+        return http.build();
+    }
+
+    // метрики и состояние для мониторинга: сборщик Prometheus входит по HTTP Basic и не держит сессию
+    @Bean
+    @Order(2)
+    public SecurityFilterChain actuatorSecurityFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher("/actuator/**")
+                .authorizeHttpRequests((requests) -> requests
+                        .requestMatchers("/actuator/health").permitAll()
+                        .anyRequest().authenticated())
+                .httpBasic(withDefaults())
+                .csrf(AbstractHttpConfigurer::disable)
+                .requestCache(RequestCacheConfigurer::disable)
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .authorizeHttpRequests((requests) -> requests
-                        .requestMatchers("/ingredients/*/edit", "/ingredients/new").authenticated()
+                        .requestMatchers("/ingredients/*/edit", "/ingredients/new", "/ingredients/import",
+                                "/ingredients/export").authenticated()
                         .requestMatchers(HttpMethod.DELETE, "/ingredients/**").authenticated()
                         .anyRequest().permitAll())
-                .csrf(csrf -> csrf
-                        .ignoringRequestMatchers("/decoding"))
                 .formLogin(withDefaults())
                 .logout(LogoutConfigurer::permitAll);
         return http.build();
@@ -0,0 +1,203 @@
+package ru.ingredients.decoding;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static ru.ingredients.utils.NormalizationUtils.closingParenthesis;
+import static ru.ingredients.utils.NormalizationUtils.isAlphanumeric;
+import static ru.ingredients.utils.NormalizationUtils.lineEnd;
+import static ru.ingredients.utils.NormalizationUtils.toLowerCase;
+
+/**
+ * Автомат Ахо-Корасик по нормализованным наименованиям.
+ * Исходный текст нормализуется на лету (как в NormalizationUtils.normalize) и просматривается за один проход,
+ * поэтому время поиска зависит от длины текста, а не от размера словаря.
+ */
+public final class AhoCorasickMatcher {
+
+    private static final int ROOT = 0;
+
+    // переходы в формате CSR: дети узла node лежат в labels/targets[childStart[node] .. childStart[node + 1])
+    private final int[] childStart;
+    private final char[] labels;
+    private final int[] targets;
+
+    private final int[] fail;
+    private final int[] word; // слово, которое заканчивается в узле, или -1
+    private final int[] dictLink; // ближайший по суффиксным ссылкам узел со словом, или -1
+    private final String[] words;
+
+    public AhoCorasickMatcher(Collection<String> normalizedNames) {
+        words = normalizedNames.stream().filter(n -> !n.isEmpty()).distinct().toArray(String[]::new);
+
+        // строим бор в виде списков "первый ребенок / следующий брат"
+        int capacity = 1 + Arrays.stream(words).mapToInt(String::length).sum();
+        int[] firstChild = new int[capacity];
+        int[] nextSibling = new int[capacity];
+        char[] label = new char[capacity];
+        int[] nodeWord = new int[capacity];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nodeWord, -1);
+        int size = 1;
+        for (int w = 0; w < words.length; w++) {
+            int node = ROOT;
+            for (int i = 0; i < words[w].length(); i++) {
+                char c = words[w].charAt(i);
+                int child = firstChild[node];
+                while (child != -1 && label[child] != c) child = nextSibling[child];
+                if (child == -1) {
+                    child = size++;
+                    label[child] = c;
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            nodeWord[node] = w;
+        }
+
+        // перекладываем переходы в отсортированные массивы для бинарного поиска
+        childStart = new int[size + 1];
+        for (int node = 0; node < size; node++) {
+            int count = 0;
+            for (int child = firstChild[node]; child != -1; child = nextSibling[child]) count++;
+            childStart[node + 1] = childStart[node] + count;
+        }
+        labels = new char[size - 1];
+        targets = new int[size - 1];
+        for (int node = 0; node < size; node++) {
+            int from = childStart[node];
+            int pos = from;
+            for (int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+                // сортировка вставками: детей у узла немного (не больше размера алфавита)
+                int j = pos++;
+                while (j > from && labels[j - 1] > label[child]) {
+                    labels[j] = labels[j - 1];
+                    targets[j] = targets[j - 1];
+                    j--;
+                }
+                labels[j] = label[child];
+                targets[j] = child;
+            }
+        }
+
+        // суффиксные ссылки обходом в ширину
+        word = Arrays.copyOf(nodeWord, size);
+        fail = new int[size];
+        dictLink = new int[size];
+        dictLink[ROOT] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int i = childStart[ROOT]; i < childStart[ROOT + 1]; i++) {
+            fail[targets[i]] = ROOT;
+            dictLink[targets[i]] = -1;
+            queue.add(targets[i]);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = childStart[node]; i < childStart[node + 1]; i++) {
+                int child = targets[i];
+                int f = fail[node];
+                int next;
+                while ((next = child(f, labels[i])) == -1 && f != ROOT) f = fail[f];
+                fail[child] = next == -1 ? ROOT : next;
+                dictLink[child] = word[fail[child]] != -1 ? fail[child] : dictLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    private int child(int node, char c) {
+        int lo = childStart[node];
+        int hi = childStart[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char l = labels[mid];
+            if (l < c) lo = mid + 1;
+            else if (l > c) hi = mid - 1;
+            else return targets[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * Самые длинные непересекающиеся вхождения слов словаря в порядке следования в тексте.
+     * Вхождение должно начинаться и заканчиваться на границе слова исходного текста.
+     */
+    public List<Match> findAll(CharSequence text) {
+        int length = text.length();
+        // позиция каждого символа нормализованного потока в исходном тексте
+        int[] positions = new int[length];
+        // длина самого длинного подходящего слова, начинающегося с данного символа потока
+        int[] longest = new int[length];
+        int[] longestWord = new int[length];
+
+        int state = ROOT;
+        int n = 0;
+        int noParenthesesUntil = -1;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '(' && i > noParenthesesUntil) {
+                int close = closingParenthesis(text, i);
+                if (close != -1) {
+                    i = close; // как и normalize, пропускаем информацию в скобках
+                    continue;
+                }
+                // до конца строки закрывающей скобки нет ни для одной из следующих открывающих
+                noParenthesesUntil = lineEnd(text, i);
+            }
+            if (!isAlphanumeric(c)) continue;
+
+            c = toLowerCase(c);
+            int next;
+            while ((next = child(state, c)) == -1 && state != ROOT) state = fail[state];
+            state = next == -1 ? ROOT : next;
+            positions[n] = i;
+
+            if (isWordEnd(text, i)) {
+                for (int node = word[state] != -1 ? state : dictLink[state]; node != -1; node = dictLink[node]) {
+                    int wordLength = words[word[node]].length();
+                    int start = n - wordLength + 1;
+                    if (wordLength > longest[start] && isWordStart(text, positions[start])) {
+                        longest[start] = wordLength;
+                        longestWord[start] = word[node];
+                    }
+                }
+            }
+            n++;
+        }
+
+        // жадно выбираем самое левое и самое длинное вхождение
+        List<Match> matches = new ArrayList<>();
+        for (int start = 0; start < n; ) {
+            if (longest[start] == 0) {
+                start++;
+                continue;
+            }
+            int end = start + longest[start] - 1;
+            matches.add(new Match(positions[start], positions[end] + 1, words[longestWord[start]]));
+            start = end + 1;
+        }
+        return matches;
+    }
+
+    private static boolean isWordStart(CharSequence text, int i) {
+        return i == 0 || !isAlphanumeric(text.charAt(i - 1));
+    }
+
+    private static boolean isWordEnd(CharSequence text, int i) {
+        return i == text.length() - 1 || !isAlphanumeric(text.charAt(i + 1));
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Вхождение слова словаря: [start, end) в исходном тексте и найденное нормализованное наименование.
+     */
+    public record Match(int start, int end, String normalizedName) {
+    }
+}
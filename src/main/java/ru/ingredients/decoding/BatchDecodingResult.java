@@ -0,0 +1,12 @@
+package ru.ingredients.decoding;
+
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.util.List;
+
+/**
+ * Строка NDJSON-ответа пакетной расшифровки: номер состава в запросе и его ингредиенты.
+ * Нераспознанные наименования возвращаются ингредиентами без id, как и в decode.
+ */
+public record BatchDecodingResult(int index, List<IngredientDTO> ingredients) {
+}
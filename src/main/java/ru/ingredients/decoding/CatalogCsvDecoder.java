@@ -0,0 +1,103 @@
+package ru.ingredients.decoding;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.stereotype.Service;
+import ru.ingredients.category.CategoryDTO;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ru.ingredients.utils.CsvUtils.skipBom;
+
+/**
+ * Потоковая расшифровка CSV-каталога: строки читаются и расшифровываются порциями,
+ * результат сразу пишется в выходной поток, поэтому расход памяти не зависит от размера файла.
+ */
+@Service
+public class CatalogCsvDecoder {
+
+    // сколько строк расшифровываем за раз, различные наименования порции ищутся в словаре один раз
+    static final int CHUNK_SIZE = 1_000;
+
+    static final List<String> RESULT_COLUMNS = List.of("ingredient_ids", "inci", "categories", "unrecognized");
+
+    private static final String VALUES_DELIMITER = "; ";
+
+    private final DecodingService decodingService;
+
+    public CatalogCsvDecoder(DecodingService decodingService) {
+        this.decodingService = decodingService;
+    }
+
+    /**
+     * Копирует каталог из in в out, добавляя к каждой строке колонки RESULT_COLUMNS.
+     * Если в заголовке нет колонки column, бросает IllegalArgumentException до записи в out.
+     */
+    public void decode(Reader in, Writer out, String column, char delimiter) throws IOException {
+        CSVFormat inFormat = CSVFormat.DEFAULT.builder()
+                .setDelimiter(delimiter)
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreEmptyLines(true)
+                .get();
+        try (CSVParser parser = CSVParser.parse(skipBom(in), inFormat)) {
+            List<String> header = parser.getHeaderNames();
+            if (!header.contains(column)) {
+                throw new IllegalArgumentException("В файле нет колонки " + column);
+            }
+
+            List<String> outHeader = new ArrayList<>(header);
+            outHeader.addAll(RESULT_COLUMNS);
+            CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT.builder().setDelimiter(delimiter).get());
+            printer.printRecord(outHeader);
+
+            List<CSVRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (CSVRecord record : parser) {
+                chunk.add(record);
+                if (chunk.size() == CHUNK_SIZE) {
+                    printChunk(printer, chunk, column);
+                    chunk.clear();
+                }
+            }
+            printChunk(printer, chunk, column);
+            printer.flush();
+        }
+    }
+
+    private void printChunk(CSVPrinter printer, List<CSVRecord> chunk, String column) throws IOException {
+        if (chunk.isEmpty()) return;
+        List<String> texts = chunk.stream().map(r -> r.isSet(column) ? r.get(column) : null).toList();
+        Iterator<List<IngredientDTO>> results = decodingService.decodeBatch(texts).iterator();
+        for (CSVRecord record : chunk) {
+            List<String> row = new ArrayList<>(record.toList());
+            row.addAll(resultColumns(results.next()));
+            printer.printRecord(row);
+        }
+        // отдаем клиенту готовую порцию
+        printer.flush();
+    }
+
+    private static List<String> resultColumns(List<IngredientDTO> ingredients) {
+        List<IngredientDTO> found = ingredients.stream().filter(i -> i.getId() != null).toList();
+        String ids = found.stream().map(i -> String.valueOf(i.getId())).collect(Collectors.joining(VALUES_DELIMITER));
+        String inci = found.stream().map(IngredientDTO::getInci).collect(Collectors.joining(VALUES_DELIMITER));
+        String categories = found.stream()
+                .flatMap(i -> i.getCategories().stream())
+                .map(CategoryDTO::getName)
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(VALUES_DELIMITER));
+        String unrecognized = ingredients.stream()
+                .filter(i -> i.getId() == null)
+                .map(IngredientDTO::getTradeName)
+                .collect(Collectors.joining(VALUES_DELIMITER));
+        return List.of(ids, inci, categories, unrecognized);
+    }
+}
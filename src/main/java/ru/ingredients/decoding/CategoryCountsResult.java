@@ -0,0 +1,9 @@
+package ru.ingredients.decoding;
+
+import java.util.Map;
+
+/**
+ * Строка NDJSON-ответа с числом ингредиентов состава по категориям (в порядке названий категорий).
+ */
+public record CategoryCountsResult(int index, Map<String, Integer> counts) {
+}
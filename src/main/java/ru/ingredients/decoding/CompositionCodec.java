@@ -0,0 +1,61 @@
+package ru.ingredients.decoding;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Компактная запись состава для ссылки: UTF-8, сжатый deflate, в base64url без выравнивания.
+ */
+public final class CompositionCodec {
+
+    // больше этого состав не распаковываем, чтобы короткая ссылка не раздувалась в память
+    static final int MAX_TEXT_BYTES = 64 * 1024;
+
+    private CompositionCodec() {
+    }
+
+    public static String encode(String text) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(out.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // IllegalArgumentException, если строка повреждена или состав длиннее MAX_TEXT_BYTES
+    public static String decode(String encoded) {
+        byte[] input = Base64.getUrlDecoder().decode(encoded);
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Поврежденная ссылка на состав");
+                }
+                if (out.size() + n > MAX_TEXT_BYTES) throw new IllegalArgumentException("Слишком длинный состав");
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Поврежденная ссылка на состав", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
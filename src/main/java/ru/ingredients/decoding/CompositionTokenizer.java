@@ -0,0 +1,188 @@
+package ru.ingredients.decoding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static ru.ingredients.utils.NormalizationUtils.isLineTerminator;
+import static ru.ingredients.utils.NormalizationUtils.lineEnd;
+
+/**
+ * Разбивает состав на наименования за один проход по тексту.
+ * Разделители внутри скобок не учитываются, запятая между цифрами ("1,2-Hexanediol") разделителем не считается,
+ * перевод строки разделяет всегда, заголовки вида "Ingredients:" / "Состав:" в начале строки пропускаются.
+ * Наименования возвращаются границами в исходном тексте, без копирования подстрок.
+ */
+@Component
+public class CompositionTokenizer {
+
+    private static final List<String> PREFIXES = List.of(
+            "ingredients", "ingrédients", "ingredientes", "inci", "composition", "состав", "ингредиенты");
+
+    private final String delimiters;
+
+    public CompositionTokenizer(@Value("${decoding.delimiters:,;•·}") String delimiters) {
+        this.delimiters = delimiters;
+    }
+
+    public Tokens tokenize(String text) {
+        return text == null ? new Tokens("") : tokenize(text, 0, text.length());
+    }
+
+    /**
+     * Наименования части text от from до to.
+     */
+    public Tokens tokenize(String text, int from, int to) {
+        Tokens tokens = new Tokens(text);
+        int tokenStart = -1;
+        int tokenEnd = -1;
+        boolean lineStart = true;
+        // пары скобок на остатке строки, считаются, только если в строке нашлась незакрытая скобка
+        int[] pairs = null;
+        int pairsFrom = 0;
+        int pairsTo = 0;
+
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (isLineTerminator(c) || isDelimiter(text, i, from, to)) {
+                tokens.add(tokenStart, tokenEnd);
+                tokenStart = -1;
+                lineStart |= isLineTerminator(c);
+                continue;
+            }
+            if (isWhitespace(c)) continue;
+
+            if (tokenStart == -1) {
+                if (lineStart) {
+                    lineStart = false;
+                    int afterPrefix = skipPrefix(text, i, to);
+                    if (afterPrefix != i) {
+                        i = afterPrefix - 1;
+                        continue;
+                    }
+                }
+                tokenStart = i;
+            }
+            tokenEnd = i + 1;
+
+            if (c == '(') {
+                int close;
+                if (pairs != null && i < pairsTo) {
+                    close = pairs[i - pairsFrom];
+                } else {
+                    close = closingParenthesis(text, i, to);
+                    if (close == -1) {
+                        // скобка не закрыта до конца строки: размечаем пары на остатке строки один раз
+                        pairsFrom = i;
+                        pairsTo = lineEnd(text, i, to);
+                        pairs = pairParentheses(text, pairsFrom, pairsTo);
+                    }
+                }
+                // разделители внутри скобок не разбивают наименование, незакрытая скобка - обычный символ
+                if (close != -1) {
+                    i = close;
+                    tokenEnd = close + 1;
+                }
+            }
+        }
+        tokens.add(tokenStart, tokenEnd);
+        return tokens;
+    }
+
+    private boolean isDelimiter(String text, int i, int from, int to) {
+        char c = text.charAt(i);
+        if (delimiters.indexOf(c) == -1) return false;
+        // десятичные дроби и локанты ("0,5%", "1,2-Hexanediol") не разбиваем
+        return c != ',' || i == from || i + 1 == to
+                || !Character.isDigit(text.charAt(i - 1)) || !Character.isDigit(text.charAt(i + 1));
+    }
+
+    private static boolean isWhitespace(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    // позиция после заголовка вида "Ingredients:" или i, если заголовка нет
+    private static int skipPrefix(String text, int i, int to) {
+        for (String prefix : PREFIXES) {
+            if (i + prefix.length() > to || !text.regionMatches(true, i, prefix, 0, prefix.length())) continue;
+            int j = i + prefix.length();
+            while (j < to && text.charAt(j) == ' ') j++;
+            if (j < to && text.charAt(j) == ':') return j + 1;
+        }
+        return i;
+    }
+
+    // ")" парная "(" в позиции open с учетом вложенности, или -1, если до конца строки ее нет
+    private static int closingParenthesis(String text, int open, int to) {
+        int depth = 0;
+        for (int i = open; i < to; i++) {
+            char c = text.charAt(i);
+            if (isLineTerminator(c)) return -1;
+            if (c == '(') depth++;
+            else if (c == ')' && --depth == 0) return i;
+        }
+        return -1;
+    }
+
+    // для каждой "(" на отрезке позиция парной ")" или -1
+    private static int[] pairParentheses(String text, int from, int to) {
+        int[] pairs = new int[to - from];
+        int[] stack = new int[to - from];
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                pairs[i - from] = -1;
+                stack[depth++] = i;
+            } else if (c == ')' && depth > 0) {
+                pairs[stack[--depth] - from] = i;
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Найденные наименования: границы [start, end) в исходном тексте, без пробелов по краям.
+     */
+    public static final class Tokens {
+
+        private final String text;
+        private int[] bounds = new int[16];
+        private int size;
+
+        private Tokens(String text) {
+            this.text = text;
+        }
+
+        private void add(int start, int end) {
+            if (start == -1) return;
+            if (2 * size == bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            bounds[2 * size] = start;
+            bounds[2 * size + 1] = end;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int start(int i) {
+            return bounds[2 * i];
+        }
+
+        public int end(int i) {
+            return bounds[2 * i + 1];
+        }
+
+        public String text() {
+            return text;
+        }
+
+        // копия наименования нужна, только если его надо показать как нераспознанное
+        public String get(int i) {
+            return text.substring(start(i), end(i));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.ingredients.decoding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш расшифровки по последовательности нормализованных наименований (вытеснение W-TinyLFU).
+ * Размер ограничен примерным объемом записей, а не их числом: ключ - весь состав, и его длина не ограничена.
+ * Запись сбрасывается, только если поменялось значение хотя бы одного из ее наименований.
+ * Статистика публикуется в метриках cache.* с тегом cache=decoding.
+ */
+@Component
+public class DecodingCache {
+
+    // оценки для weigh: заголовок и поля объекта String с массивом символов, ссылка, сама запись
+    private static final int STRING_OVERHEAD = 40;
+    private static final int REFERENCE_SIZE = 8;
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final IngredientDictionary ingredientDictionary;
+    private final Cache<List<String>, Entry> cache;
+
+    // обратный индекс "наименование → записи кэша, в которых оно встречается"
+    private final Map<String, Set<Entry>> entriesByName = new ConcurrentHashMap<>();
+
+    public DecodingCache(IngredientDictionary ingredientDictionary,
+                         @Value("${decoding.cache.maximum-weight:32MB}") DataSize maximumWeight,
+                         MeterRegistry meterRegistry) {
+        this.ingredientDictionary = ingredientDictionary;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight.toBytes())
+                .<List<String>, Entry>weigher((key, entry) -> weigh(key))
+                .recordStats()
+                // обратный индекс чистим в том же потоке, иначе он отстает от кэша
+                .executor(Runnable::run)
+                .removalListener((key, entry, cause) -> unregister(entry))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "decoding");
+    }
+
+    /**
+     * Ингредиенты для каждого нормализованного наименования, null для нераспознанных.
+     * Возвращаемый массив общий для всех читателей и не должен изменяться.
+     */
+    public IngredientDTO[] resolve(List<String> normalizedNames) {
+        return cache.get(List.copyOf(normalizedNames), this::load).ingredients;
+    }
+
+    private Entry load(List<String> normalizedNames) {
+        Entry entry = new Entry(normalizedNames);
+        // регистрируем запись до чтения снимка: изменение словаря после этого момента ее обязательно сбросит
+        register(entry);
+        IngredientDictionary.Snapshot dictionary = ingredientDictionary.snapshot();
+        for (int i = 0; i < normalizedNames.size(); i++) {
+            entry.ingredients[i] = dictionary.findByNormalizedName(normalizedNames.get(i));
+        }
+        return entry;
+    }
+
+    @EventListener
+    public void onDictionaryChanged(IngredientDictionaryChangedEvent event) {
+        for (String name : event.normalizedNames()) {
+            Set<Entry> entries = entriesByName.get(name);
+            if (entries == null) continue;
+            for (Entry entry : List.copyOf(entries)) {
+                cache.asMap().remove(entry.key, entry);
+            }
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Примерный объем записи в байтах: строки ключа и по ссылке на каждое наименование в ключе,
+     * в массиве ингредиентов и в обратном индексе.
+     */
+    static int weigh(List<String> key) {
+        long weight = ENTRY_OVERHEAD;
+        for (String name : key) {
+            weight += STRING_OVERHEAD + name.length() + 3L * REFERENCE_SIZE;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private void register(Entry entry) {
+        for (String name : new HashSet<>(entry.key)) {
+            entriesByName.compute(name, (n, entries) -> {
+                if (entries == null) entries = ConcurrentHashMap.newKeySet();
+                entries.add(entry);
+                return entries;
+            });
+        }
+    }
+
+    private void unregister(Entry entry) {
+        if (entry == null) return;
+        for (String name : new HashSet<>(entry.key)) {
+            entriesByName.computeIfPresent(name, (n, entries) -> {
+                entries.remove(entry);
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+    }
+
+    // сравнивается по ссылке: перезагруженная запись с тем же ключом - это другая запись
+    private static final class Entry {
+
+        private final List<String> key;
+        private final IngredientDTO[] ingredients;
+
+        private Entry(List<String> key) {
+            this.key = key;
+            this.ingredients = new IngredientDTO[key.size()];
+        }
+    }
+}
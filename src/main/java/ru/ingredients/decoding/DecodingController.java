@@ -1,42 +1,75 @@
 package ru.ingredients.decoding;
 
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.server.ResponseStatusException;
 import ru.ingredients.ingredient.IngredientDTO;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
 @Controller
 public class DecodingController {
 
+    // расшифровка по ссылке зависит только от состава, ее можно кэшировать
+    private static final CacheControl LINK_CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
     private final DecodingService decodingService;
 
     public DecodingController(DecodingService decodingService) {
         this.decodingService = decodingService;
     }
 
+    // результат отдается сразу, без редиректа и без сессии для переноса текста
     @PostMapping("/decoding")
-    public String postDecodingText(@RequestParam String text, RedirectAttributes redirectAttributes) {
-        redirectAttributes.addFlashAttribute("text", text);
-        return "redirect:/decoding";
+    public String postDecodingText(@RequestParam String text,
+                                   @RequestParam(defaultValue = "false") boolean freeText,
+                                   Model model) {
+        return render(text, freeText, model);
     }
 
+    /**
+     * Расшифровка по ссылке: состав в параметре text или сжатым в параметре z (см. CompositionCodec).
+     */
     @GetMapping(value = "/decoding")
-    public String getDecoding(@ModelAttribute("text") String text, Model model) {
-        List<IngredientDTO> allIngredients = decodingService.decode(text);
+    public String getDecoding(@RequestParam(required = false) String text,
+                              @RequestParam(name = "z", required = false) String compressedText,
+                              @RequestParam(defaultValue = "false") boolean freeText,
+                              Model model, HttpServletResponse response) {
+        if (compressedText != null) {
+            try {
+                text = CompositionCodec.decode(compressedText);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, LINK_CACHE_CONTROL.getHeaderValue());
+        return render(text == null ? "" : text, freeText, model);
+    }
+
+    private String render(String text, boolean freeText, Model model) {
+        // режим свободного текста не зависит от разделителей между наименованиями
+        List<IngredientDTO> allIngredients = freeText ? decodingService.decodeFreeText(text) : decodingService.decode(text);
         List<IngredientDTO> foundIngredients = allIngredients.stream().filter(i -> i.getInci() != null).toList();
         Map<String, List<IngredientDTO>> ingByCat = decodingService.groupByCat(foundIngredients);
 
         model.addAttribute("text", text);
+        model.addAttribute("freeText", freeText);
         model.addAttribute("ingByCat", ingByCat);
         model.addAttribute("allIngredients", allIngredients);
         model.addAttribute("foundIngredients", foundIngredients);
+        model.addAttribute("suggestions", decodingService.suggest(allIngredients));
+        if (!text.isBlank()) {
+            model.addAttribute("link", "/decoding?z=" + CompositionCodec.encode(text) + (freeText ? "&freeText=true" : ""));
+        }
         return "decoding/decoding";
     }
 }
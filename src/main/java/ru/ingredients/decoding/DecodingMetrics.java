@@ -0,0 +1,123 @@
+package ru.ingredients.decoding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики расшифровки:
+ * decoding.stage - время этапов (tag stage: tokenize, normalize, lookup, map, group, render) с гистограммой;
+ * decoding.composition.tokens - число наименований в составе;
+ * decoding.tokens - наименования по результату (tag recognized: true/false), доля распознанных в Prometheus -
+ * rate(decoding_tokens_total{recognized="true"}) / rate(decoding_tokens_total).
+ */
+@Component
+public class DecodingMetrics {
+
+    private static final String RENDER_START = DecodingMetrics.class.getName() + ".RENDER_START";
+
+    private final Timer tokenize;
+    private final Timer normalize;
+    private final Timer lookup;
+    private final Timer map;
+    private final Timer group;
+    private final Timer render;
+    private final DistributionSummary compositionTokens;
+    private final Counter recognized;
+    private final Counter unrecognized;
+
+    public DecodingMetrics(MeterRegistry meterRegistry) {
+        this.tokenize = stageTimer(meterRegistry, "tokenize");
+        this.normalize = stageTimer(meterRegistry, "normalize");
+        this.lookup = stageTimer(meterRegistry, "lookup");
+        this.map = stageTimer(meterRegistry, "map");
+        this.group = stageTimer(meterRegistry, "group");
+        this.render = stageTimer(meterRegistry, "render");
+        this.compositionTokens = DistributionSummary.builder("decoding.composition.tokens")
+                .description("Число наименований в расшифрованном составе")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.recognized = tokensCounter(meterRegistry, true);
+        this.unrecognized = tokensCounter(meterRegistry, false);
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("decoding.stage")
+                .description("Время этапа расшифровки состава")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Counter tokensCounter(MeterRegistry meterRegistry, boolean recognized) {
+        return Counter.builder("decoding.tokens")
+                .description("Наименования в расшифрованных составах")
+                .tag("recognized", Boolean.toString(recognized))
+                .register(meterRegistry);
+    }
+
+    // этапы замеряются по System.nanoTime() вызывающего, без Timer.Sample на каждый этап
+    void tokenized(long startNanos) {
+        tokenize.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void normalized(long startNanos) {
+        normalize.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void lookedUp(long startNanos) {
+        lookup.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void mapped(long startNanos) {
+        map.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void grouped(long startNanos) {
+        group.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Учитывает результат расшифровки одного состава: нераспознанные наименования идут без id.
+     */
+    void decoded(List<IngredientDTO> result) {
+        int found = 0;
+        for (IngredientDTO ing : result) {
+            if (ing.getId() != null) found++;
+        }
+        compositionTokens.record(result.size());
+        recognized.increment(found);
+        unrecognized.increment(result.size() - found);
+    }
+
+    /**
+     * Замер отрисовки страницы: между postHandle (модель готова) и afterCompletion (шаблон записан в ответ).
+     */
+    public HandlerInterceptor renderInterceptor() {
+        return new HandlerInterceptor() {
+            @Override
+            public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                   ModelAndView modelAndView) {
+                request.setAttribute(RENDER_START, System.nanoTime());
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                if (request.getAttribute(RENDER_START) instanceof Long start) {
+                    render.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,199 @@
+package ru.ingredients.decoding;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiFunction;
+
+@RestController
+@RequestMapping("/api/decoding")
+public class DecodingRestController {
+
+    private final DecodingService decodingService;
+    private final CatalogCsvDecoder catalogCsvDecoder;
+    private final ObjectWriter writer;
+    // пакет читается своим парсером: строка длиннее предела всего пакета не попадает в память целиком
+    private final JsonFactory batchJsonFactory;
+    private final int maxBatchCompositions;
+    private final long maxBatchChars;
+    // сколько составов пакета читаем и расшифровываем за раз, как CatalogCsvDecoder для строк каталога
+    private final int batchChunkSize;
+
+    public DecodingRestController(DecodingService decodingService, CatalogCsvDecoder catalogCsvDecoder,
+                                  ObjectMapper objectMapper,
+                                  @Value("${decoding.batch.max-compositions:10000}") int maxBatchCompositions,
+                                  @Value("${decoding.batch.max-chars:10000000}") int maxBatchChars,
+                                  @Value("${decoding.batch.chunk-size:" + CatalogCsvDecoder.CHUNK_SIZE + "}") int batchChunkSize) {
+        this.decodingService = decodingService;
+        this.catalogCsvDecoder = catalogCsvDecoder;
+        // каждая строка пишется сама по себе, поток закрывает контейнер сервлетов
+        this.writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.batchJsonFactory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxStringLength(maxBatchChars).build())
+                .build();
+        this.maxBatchCompositions = maxBatchCompositions;
+        this.maxBatchChars = maxBatchChars;
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    @GetMapping("/autocomplete")
+    public List<String> autocomplete(@RequestParam(value = "q", defaultValue = "") String query,
+                                     @RequestParam(defaultValue = "10") int limit) {
+        return decodingService.autocomplete(query, limit);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> decodeBatch(InputStream body) throws IOException {
+        return ndjson(new BatchReader(body), (index, decoded) -> new BatchDecodingResult(index, decoded));
+    }
+
+    // только число ингредиентов по категориям, без списков ингредиентов
+    @PostMapping(value = "/batch/category-counts", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> countBatchByCategory(InputStream body) throws IOException {
+        return ndjson(new BatchReader(body),
+                (index, decoded) -> new CategoryCountsResult(index, decodingService.countByCat(decoded)));
+    }
+
+    /**
+     * Пакет читается, расшифровывается и пишется порциями по batchChunkSize составов: следующая порция читается
+     * только после того, как строки предыдущей ушли клиенту. Первая порция читается до начала ответа, поэтому
+     * ошибки в ее пределах возвращаются статусом; превышение предела дальше обрывает уже начатый поток.
+     */
+    private ResponseEntity<StreamingResponseBody> ndjson(BatchReader batch,
+                                                         BiFunction<Integer, List<IngredientDTO>, Object> line)
+            throws IOException {
+        List<String> first;
+        try {
+            first = batch.nextChunk();
+        } catch (IOException | RuntimeException e) {
+            batch.close();
+            throw e;
+        }
+        StreamingResponseBody body = (OutputStream out) -> {
+            try (batch) {
+                int index = 0;
+                for (List<String> chunk = first; !chunk.isEmpty(); chunk = batch.nextChunk()) {
+                    // различные наименования порции ищутся в словаре один раз, строки идут в порядке запроса
+                    Iterator<List<IngredientDTO>> results = decodingService.decodeBatch(chunk).iterator();
+                    while (results.hasNext()) {
+                        writer.writeValue(out, line.apply(index++, results.next()));
+                        out.write('\n');
+                    }
+                    out.flush();
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // JSON-массив составов; чтение прекращается, как только пакет превысил предел по числу составов или символов
+    private final class BatchReader implements Closeable {
+
+        private final JsonParser parser;
+        private int compositions;
+        private long chars;
+        private boolean finished;
+
+        BatchReader(InputStream body) throws IOException {
+            this.parser = batchJsonFactory.createParser(body);
+            boolean array;
+            try {
+                array = parser.nextToken() == JsonToken.START_ARRAY;
+            } catch (JsonProcessingException e) {
+                parser.close();
+                throw malformed(e);
+            }
+            if (!array) {
+                parser.close();
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ожидается JSON-массив составов");
+            }
+        }
+
+        // до batchChunkSize следующих составов; пустой список - массив прочитан
+        List<String> nextChunk() throws IOException {
+            List<String> chunk = new ArrayList<>();
+            try {
+                while (!finished && chunk.size() < batchChunkSize) {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.END_ARRAY) {
+                        finished = true;
+                        break;
+                    }
+                    if (token != JsonToken.VALUE_STRING) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Состав должен быть строкой");
+                    }
+                    String text = parser.getText();
+                    chars += text.length();
+                    if (compositions == maxBatchCompositions || chars > maxBatchChars) throw batchTooLarge();
+                    compositions++;
+                    chunk.add(text);
+                }
+            } catch (StreamConstraintsException e) {
+                throw batchTooLarge();
+            } catch (JsonProcessingException e) {
+                throw malformed(e);
+            }
+            return chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    private static ResponseStatusException malformed(JsonProcessingException e) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный JSON: " + e.getOriginalMessage());
+    }
+
+    private ResponseStatusException batchTooLarge() {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "В пакете больше " + maxBatchCompositions
+                + " составов или " + maxBatchChars + " символов");
+    }
+
+    // размер каталога и число одновременных расшифровок ограничивает UploadSizeFilter до разбора multipart
+    @PostMapping(value = "/csv", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public void decodeCatalog(@RequestParam MultipartFile file,
+                              @RequestParam(defaultValue = "composition") String column,
+                              @RequestParam(defaultValue = ",") char delimiter,
+                              HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("decoded-catalog.csv").build().toString());
+        // загруженный файл лежит на диске, читаем и пишем его построчно прямо в ответ
+        try (Reader in = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+            catalogCsvDecoder.decode(in, out, column, delimiter);
+            out.flush();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
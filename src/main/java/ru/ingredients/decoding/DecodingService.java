@@ -1,65 +1,247 @@
 package ru.ingredients.decoding;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import ru.ingredients.category.CategoryDTO;
-import ru.ingredients.ingredient.*;
+import ru.ingredients.category.CategoryDirectory;
+import ru.ingredients.ingredient.IngredientDTO;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static ru.ingredients.utils.NormalizationUtils.normalize;
 
 @Service
 public class DecodingService {
 
-    private final IngredientService ingredientService;
+    // сколько вариантов "возможно, вы имели в виду" показываем для одного наименования
+    private static final int SUGGESTIONS_LIMIT = 3;
+    static final int AUTOCOMPLETE_LIMIT = 20;
 
-    public DecodingService(IngredientService ingredientService) {
-        this.ingredientService = ingredientService;
+    private final IngredientDictionary ingredientDictionary;
+    private final DecodingCache decodingCache;
+    private final CompositionTokenizer compositionTokenizer;
+    private final CategoryDirectory categoryDirectory;
+    private final DecodingMetrics decodingMetrics;
+    private final Duration suggestionsTimeBudget;
+
+    public DecodingService(IngredientDictionary ingredientDictionary,
+                           DecodingCache decodingCache,
+                           CompositionTokenizer compositionTokenizer,
+                           CategoryDirectory categoryDirectory,
+                           DecodingMetrics decodingMetrics,
+                           @Value("${decoding.suggestions.time-budget:50ms}") Duration suggestionsTimeBudget) {
+        this.ingredientDictionary = ingredientDictionary;
+        this.decodingCache = decodingCache;
+        this.compositionTokenizer = compositionTokenizer;
+        this.categoryDirectory = categoryDirectory;
+        this.decodingMetrics = decodingMetrics;
+        this.suggestionsTimeBudget = suggestionsTimeBudget;
     }
 
     public List<IngredientDTO> decode(String text) {
         // выходим из метода, если передан пустой параметр
         if (text == null || text.isBlank()) return List.of();
 
-        // отделяем имена через запятую, убираем пустые значения, пробелы в начале и в конце
-        List<String> separateNames = Arrays.stream(text.split(", "))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .toList();
-
-        // делаем запрос в БД
-        List<IngredientDTO> foundIngredients = ingredientService.getIngredientsByAllNames(separateNames);
-
-        // сохраняем все имена найденных ингредиентов, чтобы отфильтровать нераспознанные
-        Map<String, IngredientDTO> foundMap = new HashMap<>();
-        for (IngredientDTO ing : foundIngredients) {
-            foundMap.put(normalize(ing.getInci()), ing);
-            foundMap.put(normalize(ing.getTradeName()), ing);
-            ing.getOtherNames().forEach(n -> foundMap.put(normalize(n), ing));
-        }
+        // разбиваем состав на наименования, подстроки копируем только для нераспознанных
+        long start = System.nanoTime();
+        CompositionTokenizer.Tokens tokens = compositionTokenizer.tokenize(text);
+        decodingMetrics.tokenized(start);
 
-        // проходимся по списку наименований, чтобы вернуть распознанные
-        // и нераспознанные ингредиенты в изначальном порядке состава
-        List<IngredientDTO> result = new ArrayList<>();
-        for (String name : separateNames) {
-            IngredientDTO ing = foundMap.get(normalize(name)); //проверяем, если ли имя в списке распознанных
-            if (ing != null) {
-                result.add(ing); //если распознан, сохраняем ингредиент
+        // варианты с другими пробелами и регистром дают тот же ключ и ту же запись кэша
+        start = System.nanoTime();
+        List<String> normalizedNames = normalizedNames(tokens);
+        decodingMetrics.normalized(start);
+        start = System.nanoTime();
+        IngredientDTO[] found = decodingCache.resolve(normalizedNames);
+        decodingMetrics.lookedUp(start);
+
+        // собираем распознанные и нераспознанные ингредиенты в изначальном порядке состава
+        start = System.nanoTime();
+        List<IngredientDTO> result = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            if (found[i] != null) {
+                result.add(found[i]); //если распознан, сохраняем ингредиент
             } else {
-                result.add(new IngredientDTO().setTradeName(name)); //если нет, создаем пустой объект с нераспознанным именем
+                result.add(new IngredientDTO().setTradeName(tokens.get(i))); //если нет, создаем пустой объект с нераспознанным именем
+            }
+        }
+        decodingMetrics.mapped(start);
+        decodingMetrics.decoded(result);
+
+        return result;
+    }
+
+    /**
+     * Расшифровка пакета составов с той же семантикой, что и decode.
+     * Различные наименования переданных составов ищутся в словаре один раз и в одном снимке,
+     * а результаты по составам собираются лениво, в порядке следования составов.
+     * Большие пакеты передаются сюда порциями (см. CatalogCsvDecoder, DecodingRestController).
+     */
+    public Stream<List<IngredientDTO>> decodeBatch(List<String> texts) {
+        List<CompositionTokenizer.Tokens> compositions = texts.stream().map(compositionTokenizer::tokenize).toList();
+        List<List<String>> normalized = compositions.stream().map(DecodingService::normalizedNames).toList();
+
+        IngredientDictionary.Snapshot dictionary = ingredientDictionary.snapshot();
+        Map<String, IngredientDTO> resolved = new HashMap<>();
+        for (List<String> names : normalized) {
+            for (String name : names) {
+                if (!resolved.containsKey(name)) resolved.put(name, dictionary.findByNormalizedName(name));
+            }
+        }
+
+        return IntStream.range(0, compositions.size()).mapToObj(c -> {
+            CompositionTokenizer.Tokens tokens = compositions.get(c);
+            List<IngredientDTO> result = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                IngredientDTO ing = resolved.get(normalized.get(c).get(i));
+                result.add(ing != null ? ing : new IngredientDTO().setTradeName(tokens.get(i)));
             }
+            decodingMetrics.decoded(result);
+            return result;
+        });
+    }
+
+    private static List<String> normalizedNames(CompositionTokenizer.Tokens tokens) {
+        String[] names = new String[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            names[i] = normalize(tokens.text(), tokens.start(i), tokens.end(i));
         }
+        return List.of(names);
+    }
+
+    public List<IngredientDTO> decodeFreeText(String text) {
+        // выходим из метода, если передан пустой параметр
+        if (text == null || text.isBlank()) return List.of();
 
+        // ищем наименования автоматом за один проход по тексту, разделители не важны
+        IngredientDictionary.Snapshot dictionary = ingredientDictionary.snapshot();
+        List<IngredientDTO> result = new ArrayList<>();
+        int from = 0;
+        for (AhoCorasickMatcher.Match match : dictionary.matcher().findAll(text)) {
+            // автомат может быть собран по прежнему снимку: удаленное с тех пор наименование не распознано
+            IngredientDTO ing = dictionary.findByNormalizedName(match.normalizedName());
+            if (ing == null) continue;
+            addUnrecognized(result, text, from, match.start());
+            result.add(ing);
+            from = match.end();
+        }
+        addUnrecognized(result, text, from, text.length());
+        decodingMetrics.decoded(result);
         return result;
     }
 
+    // текст между найденными наименованиями возвращаем как нераспознанные ингредиенты
+    private void addUnrecognized(List<IngredientDTO> result, String text, int from, int to) {
+        CompositionTokenizer.Tokens tokens = compositionTokenizer.tokenize(text, from, to);
+        for (int i = 0; i < tokens.size(); i++) {
+            if (!normalize(text, tokens.start(i), tokens.end(i)).isEmpty()) {
+                result.add(new IngredientDTO().setTradeName(tokens.get(i)));
+            }
+        }
+    }
+
+    public Map<String, List<IngredientDTO>> suggest(List<IngredientDTO> decoded) {
+        // на все нераспознанные наименования запроса отводится общий бюджет времени
+        long deadline = System.nanoTime() + suggestionsTimeBudget.toNanos();
+        IngredientDictionary.Snapshot dictionary = ingredientDictionary.snapshot();
+        Map<String, List<IngredientDTO>> suggestions = new LinkedHashMap<>();
+        for (IngredientDTO ing : decoded) {
+            if (ing.getId() != null || suggestions.containsKey(ing.getTradeName())) continue;
+            if (System.nanoTime() >= deadline) break;
+
+            // разные наименования одного ингредиента показываем один раз
+            Map<Long, IngredientDTO> candidates = new LinkedHashMap<>();
+            for (String name : dictionary.trigramIndex().search(normalize(ing.getTradeName()), SUGGESTIONS_LIMIT * 2, deadline)) {
+                IngredientDTO candidate = dictionary.findByNormalizedName(name);
+                if (candidate != null) candidates.putIfAbsent(candidate.getId(), candidate);
+            }
+            if (!candidates.isEmpty()) {
+                suggestions.put(ing.getTradeName(), candidates.values().stream().limit(SUGGESTIONS_LIMIT).toList());
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Наименования из справочника (INCI, торговые и другие), начинающиеся с введенного текста.
+     */
+    public List<String> autocomplete(String prefix, int limit) {
+        int capped = Math.max(0, Math.min(limit, AUTOCOMPLETE_LIMIT));
+        return ingredientDictionary.snapshot().complete(normalize(prefix), capped);
+    }
+
+    /**
+     * Ингредиенты по категориям. Группы идут в порядке названий категорий, ингредиенты - в порядке состава.
+     */
+    @SuppressWarnings("unchecked")
     public Map<String, List<IngredientDTO>> groupByCat(List<IngredientDTO> ingredients) {
-        Map<String, List<IngredientDTO>> ingByCat = new HashMap<>();
-        for (IngredientDTO ingredient : ingredients) {
-            for (CategoryDTO cat : ingredient.getCategories()) {
-                ingByCat.computeIfAbsent(cat.getName(), k -> new ArrayList<>()).add(ingredient);
+        long start = System.nanoTime();
+        long[][] bits = categoryBits(ingredients);
+        CategoryDirectory.State categories = categoryDirectory.state();
+        int[] counts = countBits(bits, categories.size());
+
+        // списки сразу нужной длины, раскладываем ингредиенты по установленным битам
+        List<IngredientDTO>[] byCategory = new List[categories.size()];
+        for (int i = 0; i < bits.length; i++) {
+            for (int w = 0; w < bits[i].length; w++) {
+                for (long word = bits[i][w]; word != 0; word &= word - 1) {
+                    int c = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (byCategory[c] == null) byCategory[c] = new ArrayList<>(counts[c]);
+                    byCategory[c].add(ingredients.get(i));
+                }
             }
         }
+
+        Map<String, List<IngredientDTO>> ingByCat = new LinkedHashMap<>();
+        for (int position = 0; position < categories.size(); position++) {
+            int c = categories.byNameAt(position);
+            if (byCategory[c] == null) continue;
+            List<IngredientDTO> sameName = ingByCat.putIfAbsent(categories.get(c).getName(), byCategory[c]);
+            if (sameName != null) sameName.addAll(byCategory[c]);
+        }
+        decodingMetrics.grouped(start);
         return ingByCat;
     }
+
+    /**
+     * Число ингредиентов в каждой категории, в порядке названий категорий, без сборки списков.
+     */
+    public Map<String, Integer> countByCat(List<IngredientDTO> ingredients) {
+        long[][] bits = categoryBits(ingredients);
+        CategoryDirectory.State categories = categoryDirectory.state();
+        int[] counts = countBits(bits, categories.size());
+
+        Map<String, Integer> countByCat = new LinkedHashMap<>();
+        for (int position = 0; position < categories.size(); position++) {
+            int c = categories.byNameAt(position);
+            if (counts[c] != 0) countByCat.merge(categories.get(c).getName(), counts[c], Integer::sum);
+        }
+        return countByCat;
+    }
+
+    // маски категорий считаются при сборке снимка словаря; для ингредиентов не из снимка считаем на месте
+    private long[][] categoryBits(List<IngredientDTO> ingredients) {
+        IngredientDictionary.Snapshot dictionary = ingredientDictionary.snapshot();
+        long[][] bits = new long[ingredients.size()][];
+        for (int i = 0; i < bits.length; i++) {
+            IngredientDTO ing = ingredients.get(i);
+            bits[i] = dictionary.categoryBits(ing);
+            if (bits[i] == null) bits[i] = categoryDirectory.bitsOf(ing.getCategories());
+        }
+        return bits;
+    }
+
+    private static int[] countBits(long[][] bits, int size) {
+        int[] counts = new int[size];
+        for (long[] ingBits : bits) {
+            for (int w = 0; w < ingBits.length; w++) {
+                for (long word = ingBits[w]; word != 0; word &= word - 1) {
+                    counts[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+                }
+            }
+        }
+        return counts;
+    }
 }
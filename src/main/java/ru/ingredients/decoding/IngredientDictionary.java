@@ -0,0 +1,375 @@
+package ru.ingredients.decoding;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.ingredients.category.CategoryDirectory;
+import ru.ingredients.category.CategoryService;
+import ru.ingredients.ingredient.IngredientDTO;
+import ru.ingredients.ingredient.IngredientDeletedEvent;
+import ru.ingredients.ingredient.IngredientSavedEvent;
+import ru.ingredients.ingredient.IngredientService;
+import ru.ingredients.ingredient.IngredientsImportedEvent;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ru.ingredients.utils.NormalizationUtils.normalize;
+
+/**
+ * Словарь "нормализованное имя → ингредиент" для расшифровки составов без обращения к БД.
+ * Читатели получают неизменяемый снимок, запись собирает новый снимок и атомарно подменяет ссылку.
+ * Автомат и триграммный индекс пересобираются в фоне: новый снимок, пока они не готовы, отвечает прежними.
+ * Там же слой изменений таблиц снимка вливается в их основу (см. LayeredMap).
+ */
+@Component
+public class IngredientDictionary {
+
+    private final IngredientService ingredientService;
+    private final CategoryService categoryService;
+    private final CategoryDirectory categoryDirectory;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // один поток: сборки не идут параллельно, а изменения за время сборки попадают в следующую
+    private final ExecutorService indexBuilder = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "ingredient-dictionary-indexes");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean indexesScheduled;
+
+    public IngredientDictionary(IngredientService ingredientService, CategoryService categoryService,
+                                CategoryDirectory categoryDirectory, ApplicationEventPublisher eventPublisher) {
+        this.ingredientService = ingredientService;
+        this.categoryService = categoryService;
+        this.categoryDirectory = categoryDirectory;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void load() {
+        // маски категорий считаются по справочнику, поэтому он заполняется раньше словаря
+        categoryService.getAllCategories();
+        replaceAll(ingredientService.getAllIngredientsWithNames());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexBuilder.shutdownNow();
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public synchronized void replaceAll(Collection<IngredientDTO> ingredients) {
+        Map<Long, IngredientDTO> byId = new LinkedHashMap<>();
+        for (IngredientDTO ing : ingredients) {
+            byId.put(ing.getId(), copyOf(ing));
+        }
+        Snapshot next = Snapshot.of(snapshot.version() + 1, byId.values(), categoryDirectory);
+        // полная перезагрузка (запуск приложения): индексы строятся сразу, прежние к новому словарю не подходят
+        next.indexes = Indexes.of(next);
+        Set<String> changedNames = new HashSet<>(snapshot.normalizedNames());
+        changedNames.addAll(next.normalizedNames());
+        replace(next, changedNames);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(IngredientSavedEvent event) {
+        putAll(List.of(event.ingredient()));
+    }
+
+    // вся порция загрузки попадает в один новый снимок
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImported(IngredientsImportedEvent event) {
+        putAll(event.ingredients());
+    }
+
+    private synchronized void putAll(List<IngredientDTO> ingredients) {
+        Snapshot.Patch patch = new Snapshot.Patch(snapshot);
+        for (IngredientDTO ing : ingredients) {
+            patch.put(copyOf(ing), categoryDirectory);
+        }
+        replace(patch.build(snapshot.version() + 1), patch.changedNames());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDeleted(IngredientDeletedEvent event) {
+        if (!snapshot.containsId(event.id())) return;
+        Snapshot.Patch patch = new Snapshot.Patch(snapshot);
+        patch.remove(event.id());
+        replace(patch.build(snapshot.version() + 1), patch.changedNames());
+    }
+
+    // сначала подменяем снимок, затем сообщаем, какие наименования могли поменять значение
+    private void replace(Snapshot next, Set<String> changedNames) {
+        if (next.indexes == null) {
+            next.indexes = snapshot.indexes;
+            scheduleIndexes();
+        }
+        snapshot = next;
+        eventPublisher.publishEvent(new IngredientDictionaryChangedEvent(next.version(), Set.copyOf(changedNames)));
+    }
+
+    private void scheduleIndexes() {
+        if (indexesScheduled) return;
+        indexesScheduled = true;
+        indexBuilder.execute(this::buildIndexes);
+    }
+
+    // собирает индексы для текущего снимка и повторяет, пока снимок не перестанет меняться за время сборки
+    private void buildIndexes() {
+        try {
+            while (true) {
+                Snapshot target;
+                synchronized (this) {
+                    target = snapshot;
+                    if (target.indexesReady()) {
+                        indexesScheduled = false;
+                        return;
+                    }
+                }
+                Indexes built = Indexes.of(target);
+                Tables targetTables = target.tables;
+                Tables compacted = targetTables.compact();
+                synchronized (this) {
+                    target.indexes = built;
+                    target.tables = compacted;
+                    // более новый снимок до своей сборки отвечает хотя бы этими индексами
+                    if (snapshot.indexes.version() < built.version()) snapshot.indexes = built;
+                    // и получает сжатые таблицы: в его слое остаются только изменения после target
+                    if (snapshot != target) snapshot.tables = snapshot.tables.rebase(targetTables, compacted);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                indexesScheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    // храним собственную копию без описания: она не нужна для расшифровки и не должна меняться извне
+    private static IngredientDTO copyOf(IngredientDTO ing) {
+        return new IngredientDTO(
+                ing.getId(),
+                ing.getInci(),
+                ing.getTradeName(),
+                null,
+                Set.copyOf(ing.getOtherNames()),
+                Set.copyOf(ing.getCategories()));
+    }
+
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(0,
+                new Tables(LayeredMap.of(new HashMap<>()), LayeredMap.of(new HashMap<>())), PrefixIndex.EMPTY);
+
+        static {
+            EMPTY.indexes = Indexes.of(EMPTY);
+        }
+
+        private final long version;
+
+        // содержимое не меняется; ссылку подменяет только фоновая сборка на такие же, но сжатые таблицы
+        private volatile Tables tables;
+
+        // автомат и триграммный индекс: собранные для этого снимка или, пока сборка идет, для одного из прежних
+        private volatile Indexes indexes;
+
+        // индекс префиксов собирается вместе со снимком: после изменения перекодируются только затронутые блоки
+        private final PrefixIndex prefixIndex;
+
+        private Snapshot(long version, Tables tables, PrefixIndex prefixIndex) {
+            this.version = version;
+            this.tables = tables;
+            this.prefixIndex = prefixIndex;
+        }
+
+        static Snapshot of(long version, Collection<IngredientDTO> ingredients, CategoryDirectory categoryDirectory) {
+            Map<Long, Entry> byId = new HashMap<>();
+            Map<String, IngredientDTO> byName = new HashMap<>();
+            List<String> names = new ArrayList<>(ingredients.size() * 4);
+            for (IngredientDTO ing : ingredients) {
+                byId.put(ing.getId(), new Entry(ing, categoryDirectory.bitsOf(ing.getCategories())));
+                for (String name : namesOf(ing)) {
+                    byName.put(name, ing);
+                    names.add(name);
+                }
+            }
+            return new Snapshot(version, new Tables(LayeredMap.of(byId), LayeredMap.of(byName)), PrefixIndex.build(names));
+        }
+
+        // ингредиент снимка и маска его категорий
+        private record Entry(IngredientDTO ingredient, long[] categoryBits) {
+        }
+
+        /**
+         * Следующий снимок как предыдущий плюс изменения: основа таблиц общая с предыдущим снимком,
+         * изменения ложатся в слой поверх нее за O(log n) на ключ; наименования нормализуются и маски категорий считаются только
+         * у добавленных, измененных и удаленных ингредиентов.
+         */
+        static final class Patch {
+
+            private final Snapshot previous;
+            private final LayeredMap.Builder<Long, Entry> byId;
+            private final LayeredMap.Builder<String, IngredientDTO> byName;
+            private final Set<String> changedNames = new HashSet<>();
+
+            Patch(Snapshot previous) {
+                this.previous = previous;
+                this.byId = previous.tables.byId().toBuilder();
+                this.byName = previous.tables.byName().toBuilder();
+            }
+
+            void put(IngredientDTO ing, CategoryDirectory categoryDirectory) {
+                remove(ing.getId());
+                byId.put(ing.getId(), new Entry(ing, categoryDirectory.bitsOf(ing.getCategories())));
+                for (String name : namesOf(ing)) {
+                    byName.put(name, ing);
+                    changedNames.add(name);
+                }
+            }
+
+            void remove(long id) {
+                Entry previousEntry = byId.get(id);
+                if (previousEntry == null) return;
+                byId.remove(id);
+                for (String name : namesOf(previousEntry.ingredient())) {
+                    // наименование могло уже перейти к другому ингредиенту этой же порции
+                    if (byName.get(name) == previousEntry.ingredient()) byName.remove(name);
+                    changedNames.add(name);
+                }
+            }
+
+            Set<String> changedNames() {
+                return changedNames;
+            }
+
+            Snapshot build(long version) {
+                LayeredMap<String, IngredientDTO> names = byName.build();
+                return new Snapshot(version, new Tables(byId.build(), names),
+                        previous.prefixIndex.update(changedNames, names::containsKey));
+            }
+        }
+
+        static Set<String> namesOf(IngredientDTO ing) {
+            Set<String> names = new HashSet<>();
+            names.add(normalize(ing.getInci()));
+            names.add(normalize(ing.getTradeName()));
+            ing.getOtherNames().forEach(n -> names.add(normalize(n)));
+            names.remove("");
+            return names;
+        }
+
+        // все нормализованные наименования снимка, для сборки индексов
+        List<String> normalizedNames() {
+            LayeredMap<String, IngredientDTO> byName = tables.byName();
+            List<String> names = new ArrayList<>(byName.size());
+            byName.forEach((name, ing) -> names.add(name));
+            return names;
+        }
+
+        boolean containsId(long id) {
+            return tables.byId().containsKey(id);
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public IngredientDTO findByNormalizedName(String normalizedName) {
+            return tables.byName().get(normalizedName);
+        }
+
+        public IngredientDTO findById(long id) {
+            Entry entry = tables.byId().get(id);
+            return entry == null ? null : entry.ingredient();
+        }
+
+        /**
+         * Битовая маска категорий (номера из CategoryDirectory) для ингредиента этого снимка,
+         * или null, если ing - не объект из снимка.
+         */
+        public long[] categoryBits(IngredientDTO ing) {
+            if (ing.getId() == null) return null;
+            Entry entry = tables.byId().get(ing.getId());
+            return entry != null && entry.ingredient() == ing ? entry.categoryBits() : null;
+        }
+
+        /**
+         * Автомат по наименованиям. Сразу после изменения словаря может быть собран по прежнему снимку:
+         * найденное им наименование проверяется через findByNormalizedName.
+         */
+        public AhoCorasickMatcher matcher() {
+            return indexes.matcher();
+        }
+
+        /**
+         * Триграммный индекс; как и matcher(), до окончания фоновой сборки может отставать от снимка.
+         */
+        public TrigramIndex trigramIndex() {
+            return indexes.trigramIndex();
+        }
+
+        /**
+         * true, если matcher() и trigramIndex() собраны по этому снимку.
+         */
+        public boolean indexesReady() {
+            return indexes.version() == version;
+        }
+
+        public PrefixIndex prefixIndex() {
+            return prefixIndex;
+        }
+
+        /**
+         * До limit исходных наименований (INCI, торговых, других), нормализованная форма которых
+         * начинается с normalizedPrefix. Индекс хранит только ключи, написание берется из снимка.
+         */
+        public List<String> complete(String normalizedPrefix, int limit) {
+            return prefixIndex.complete(normalizedPrefix, limit).stream().map(this::nameOf).toList();
+        }
+
+        // исходное наименование, нормализованная форма которого равна normalizedName, или null
+        private String nameOf(String normalizedName) {
+            IngredientDTO ing = tables.byName().get(normalizedName);
+            if (ing == null) return null;
+            if (normalize(ing.getInci()).equals(normalizedName)) return ing.getInci();
+            if (normalize(ing.getTradeName()).equals(normalizedName)) return ing.getTradeName();
+            for (String other : ing.getOtherNames()) {
+                if (normalize(other).equals(normalizedName)) return other;
+            }
+            return normalizedName;
+        }
+
+        public int size() {
+            return tables.byId().size();
+        }
+    }
+
+    private record Tables(LayeredMap<Long, Snapshot.Entry> byId, LayeredMap<String, IngredientDTO> byName) {
+
+        Tables compact() {
+            return new Tables(byId.compact(), byName.compact());
+        }
+
+        Tables rebase(Tables from, Tables compacted) {
+            return new Tables(byId.rebase(from.byId, compacted.byId), byName.rebase(from.byName, compacted.byName));
+        }
+    }
+
+    private record Indexes(long version, AhoCorasickMatcher matcher, TrigramIndex trigramIndex) {
+
+        static Indexes of(Snapshot snapshot) {
+            List<String> names = snapshot.normalizedNames();
+            return new Indexes(snapshot.version(), new AhoCorasickMatcher(names), new TrigramIndex(names));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.ingredients.decoding;
+
+import java.util.Set;
+
+/**
+ * Публикуется после подмены снимка словаря: нормализованные наименования,
+ * которые до или после изменения указывали на измененные ингредиенты.
+ */
+public record IngredientDictionaryChangedEvent(long version, Set<String> normalizedNames) {
+}
@@ -0,0 +1,134 @@
+package ru.ingredients.decoding;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Неизменяемая таблица из основы (HashMap) и слоя изменений поверх нее (PersistentHashMap).
+ * Изменение попадает в слой за O(log n), основа не копируется; поиск идет сначала в небольшом слое, затем
+ * в основе и стоит почти как в одной HashMap. Слой вливается в основу целиком (compact) вне пути записи.
+ */
+final class LayeredMap<K, V> {
+
+    // отметка удаленного ключа в слое: в основе он может оставаться
+    private static final Object REMOVED = new Object();
+
+    private final Map<K, V> base;
+    private final PersistentHashMap<K, Object> overlay;
+    private final int size;
+
+    private LayeredMap(Map<K, V> base, PersistentHashMap<K, Object> overlay, int size) {
+        this.base = base;
+        this.overlay = overlay;
+        this.size = size;
+    }
+
+    static <K, V> LayeredMap<K, V> of(Map<K, V> base) {
+        return new LayeredMap<>(Collections.unmodifiableMap(base), PersistentHashMap.empty(), base.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        if (overlay.size() != 0) {
+            Object value = overlay.get(key);
+            if (value != null) return value == REMOVED ? null : (V) value;
+        }
+        return base.get(key);
+    }
+
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int overlaySize() {
+        return overlay.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        base.forEach((key, value) -> {
+            if (!overlay.containsKey(key)) action.accept(key, value);
+        });
+        overlay.forEach((key, value) -> {
+            if (value != REMOVED) action.accept(key, (V) value);
+        });
+    }
+
+    Builder<K, V> toBuilder() {
+        return new Builder<>(base, overlay.toBuilder(), size);
+    }
+
+    /**
+     * Та же таблица с пустым слоем: O(n), поэтому вызывается в фоне, а не при каждом изменении.
+     */
+    LayeredMap<K, V> compact() {
+        if (overlay.size() == 0) return this;
+        Map<K, V> merged = new HashMap<>(base);
+        overlay.forEach((key, value) -> {
+            if (value == REMOVED) merged.remove(key);
+            else merged.put(key, cast(value));
+        });
+        return of(merged);
+    }
+
+    /**
+     * Эта таблица поверх compacted - сжатой версии from, от которой эта таблица получена изменениями.
+     * В слое остаются только изменения, сделанные после from; O(размер слоя).
+     */
+    LayeredMap<K, V> rebase(LayeredMap<K, V> from, LayeredMap<K, V> compacted) {
+        if (base != from.base) return this;
+        PersistentHashMap.Builder<K, Object> rest = PersistentHashMap.<K, Object>empty().toBuilder();
+        // слой только пополняется, поэтому все ключи слоя from есть и в этом слое
+        overlay.forEach((key, value) -> {
+            if (from.overlay.get(key) != value) rest.put(key, value);
+        });
+        return new LayeredMap<>(compacted.base, rest.build(), size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    static final class Builder<K, V> {
+
+        private final Map<K, V> base;
+        private final PersistentHashMap.Builder<K, Object> overlay;
+        private int size;
+
+        private Builder(Map<K, V> base, PersistentHashMap.Builder<K, Object> overlay, int size) {
+            this.base = base;
+            this.overlay = overlay;
+            this.size = size;
+        }
+
+        V get(Object key) {
+            Object value = overlay.get(key);
+            if (value != null) return value == REMOVED ? null : cast(value);
+            return base.get(key);
+        }
+
+        Builder<K, V> put(K key, V value) {
+            if (get(key) == null) size++;
+            overlay.put(key, value);
+            return this;
+        }
+
+        Builder<K, V> remove(K key) {
+            if (get(key) == null) return this;
+            size--;
+            overlay.put(key, REMOVED);
+            return this;
+        }
+
+        LayeredMap<K, V> build() {
+            return new LayeredMap<>(base, overlay.build(), size);
+        }
+    }
+}
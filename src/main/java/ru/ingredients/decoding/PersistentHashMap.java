@@ -0,0 +1,303 @@
+package ru.ingredients.decoding;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Неизменяемая хеш-таблица с общими частями между версиями (hash array mapped trie): put и remove возвращают
+ * новую таблицу за O(log32 n), копируя только путь от корня до изменяемого узла. Снимки словаря строятся
+ * из предыдущего плюс изменения, не копируя таблицы целиком. Значения null не допускаются.
+ * Builder меняет собственные узлы на месте: так выгоднее заполнять таблицу с нуля или менять ее порцией.
+ */
+final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        return root == null ? null : (V) root.find(0, hash(key), key);
+    }
+
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    PersistentHashMap<K, V> put(K key, V value) {
+        return toBuilder(null).put(key, value).build();
+    }
+
+    PersistentHashMap<K, V> remove(K key) {
+        return toBuilder(null).remove(key).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    Builder<K, V> toBuilder() {
+        return toBuilder(new Object());
+    }
+
+    private Builder<K, V> toBuilder(Object owner) {
+        return new Builder<>(owner, root, size);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Изменение таблицы порцией. Узлы, созданные этим Builder, меняются на месте, узлы исходной таблицы
+     * копируются при первом изменении, поэтому исходная таблица и уже собранные из Builder не меняются.
+     */
+    static final class Builder<K, V> {
+
+        // метка узлов, которые можно менять на месте; null - каждое изменение копирует путь
+        private Object owner;
+        private Node root;
+        private int size;
+
+        private Builder(Object owner, Node root, int size) {
+            this.owner = owner;
+            this.root = root;
+            this.size = size;
+        }
+
+        Builder<K, V> put(K key, V value) {
+            if (value == null) throw new IllegalArgumentException("null value");
+            boolean[] added = new boolean[1];
+            root = (root == null ? BitmapNode.EMPTY : root).put(owner, 0, hash(key), key, value, added);
+            if (added[0]) size++;
+            return this;
+        }
+
+        Builder<K, V> remove(Object key) {
+            if (root == null) return this;
+            boolean[] removed = new boolean[1];
+            root = root.remove(owner, 0, hash(key), key, removed);
+            if (removed[0]) size--;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(Object key) {
+            return root == null ? null : (V) root.find(0, hash(key), key);
+        }
+
+        PersistentHashMap<K, V> build() {
+            // узлы переходят в неизменяемую таблицу, дальнейшие изменения Builder их копируют
+            owner = owner == null ? null : new Object();
+            return size == 0 ? empty() : new PersistentHashMap<>(root, size);
+        }
+    }
+
+    private abstract static class Node {
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node put(Object owner, int shift, int hash, Object key, Object value, boolean[] added);
+
+        // null, если узел опустел
+        abstract Node remove(Object owner, int shift, int hash, Object key, boolean[] removed);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    // до 32 ячеек, занятые отмечены в bitmap; ячейка - пара (ключ, значение) или (null, дочерний узел)
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        private final Object owner;
+        private int bitmap;
+        private Object[] array;
+
+        BitmapNode(Object owner, int bitmap, Object[] array) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put(Object owner, int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] grown = new Object[array.length + 2];
+                System.arraycopy(array, 0, grown, 0, i);
+                grown[i] = key;
+                grown[i + 1] = value;
+                System.arraycopy(array, i, grown, i + 2, array.length - i);
+                if (isOwnedBy(owner)) {
+                    bitmap |= bit;
+                    array = grown;
+                    return this;
+                }
+                return new BitmapNode(owner, bitmap | bit, grown);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(owner, shift + BITS, hash, key, value, added);
+                return child == v ? this : with(owner, i, null, child);
+            }
+            if (key.equals(k)) return v == value ? this : with(owner, i, k, value);
+            added[0] = true;
+            return with(owner, i, null, pair(owner, shift + BITS, k, v, hash, key, value));
+        }
+
+        @Override
+        Node remove(Object owner, int shift, int hash, Object key, boolean[] removed) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return this;
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).remove(owner, shift + BITS, hash, key, removed);
+                if (child == v) return this;
+                if (child != null) return with(owner, i, null, child);
+            } else if (!key.equals(k)) {
+                return this;
+            } else {
+                removed[0] = true;
+            }
+            if (bitmap == bit) return null;
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            if (isOwnedBy(owner)) {
+                bitmap ^= bit;
+                array = shrunk;
+                return this;
+            }
+            return new BitmapNode(owner, bitmap ^ bit, shrunk);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) ((Node) array[i + 1]).forEach(action);
+                else action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        private boolean isOwnedBy(Object owner) {
+            return owner != null && this.owner == owner;
+        }
+
+        private BitmapNode with(Object owner, int i, Object key, Object value) {
+            BitmapNode node = isOwnedBy(owner) ? this : new BitmapNode(owner, bitmap, array.clone());
+            node.array[i] = key;
+            node.array[i + 1] = value;
+            return node;
+        }
+
+        // узел для двух ключей, попавших в одну ячейку
+        private static Node pair(Object owner, int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            boolean[] added = new boolean[1];
+            return new BitmapNode(owner, 0, new Object[0])
+                    .put(owner, shift, hash1, key1, value1, added)
+                    .put(owner, shift, hash2, key2, value2, added);
+        }
+    }
+
+    // ключи с одинаковым хешем целиком; такие узлы не меняются на месте
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(Object owner, int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                Node wrapper = new BitmapNode(owner, 1 << ((this.hash >>> shift) & MASK), new Object[]{null, this});
+                return wrapper.put(owner, shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) return this;
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            added[0] = true;
+            Object[] grown = Arrays.copyOf(array, array.length + 2);
+            grown[array.length] = key;
+            grown[array.length + 1] = value;
+            return new CollisionNode(hash, grown);
+        }
+
+        @Override
+        Node remove(Object owner, int shift, int hash, Object key, boolean[] removed) {
+            int i = indexOf(key);
+            if (i < 0) return this;
+            removed[0] = true;
+            if (array.length == 2) return null;
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            return new CollisionNode(hash, shrunk);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+    }
+}
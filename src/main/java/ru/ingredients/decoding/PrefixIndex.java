@@ -0,0 +1,222 @@
+package ru.ingredients.decoding;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Автодополнение по префиксу нормализованного наименования.
+ * Ключи отсортированы и лежат блоками до BLOCK штук в UTF-8 с общими префиксами соседей (front coding):
+ * первый ключ блока целиком, остальные как "длина общего префикса с предыдущим + окончание".
+ * Поиск - бинарный по первым ключам блоков, поэтому время запроса растет с размером словаря логарифмически,
+ * а изменение части ключей перекодирует только затронутые блоки. Соседние блоки, ключи которых помещаются
+ * в один, при изменении сливаются, поэтому после удалений блоки не мельчают и поиск не замедляется.
+ */
+public final class PrefixIndex {
+
+    static final int BLOCK = 32;
+
+    static final PrefixIndex EMPTY = new PrefixIndex(new byte[0][], 0);
+
+    private final byte[][] blocks;
+    private final int size;
+
+    private PrefixIndex(byte[][] blocks, int size) {
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+    public static PrefixIndex build(Collection<String> normalizedNames) {
+        List<String> sorted = normalizedNames.stream().filter(n -> !n.isEmpty()).distinct().sorted().toList();
+        List<byte[]> blocks = new ArrayList<>(sorted.size() / BLOCK + 1);
+        encode(sorted, blocks);
+        return new PrefixIndex(blocks.toArray(byte[][]::new), sorted.size());
+    }
+
+    /**
+     * Новый индекс после изменения части ключей: измененный ключ остается или добавляется, если contains его
+     * принимает, иначе удаляется. Перекодируются только блоки с измененными ключами и их соседи, если
+     * вместе они помещаются в один блок; остальные переходят в новый индекс без копирования.
+     */
+    public PrefixIndex update(Set<String> changedNames, Predicate<String> contains) {
+        List<String> changed = changedNames.stream().filter(n -> !n.isEmpty()).sorted().toList();
+        List<byte[]> result = new ArrayList<>(blocks.length + changed.size() / BLOCK + 1);
+        int newSize = size;
+        int copied = 0;
+        for (int c = 0; c < changed.size(); ) {
+            int target = blockOf(changed.get(c));
+            for (; copied < target; copied++) append(result, blocks[copied]);
+
+            // изменения блока - ключи до первого ключа следующего блока
+            String nextHead = target + 1 < blocks.length ? head(blocks[target + 1]) : null;
+            int to = c;
+            while (to < changed.size() && (nextHead == null || changed.get(to).compareTo(nextHead) < 0)) to++;
+
+            List<String> keys = target < blocks.length ? decode(blocks[target]) : List.of();
+            List<String> merged = merge(keys, changed.subList(c, to), contains);
+            append(result, merged);
+            newSize += merged.size() - keys.size();
+            copied = target + 1;
+            c = to;
+        }
+        for (; copied < blocks.length; copied++) append(result, blocks[copied]);
+        return new PrefixIndex(result.toArray(byte[][]::new), newSize);
+    }
+
+    // добавляет ключи перекодированного блока, сливая их с предыдущим блоком, если вместе они помещаются в один
+    private static void append(List<byte[]> result, List<String> keys) {
+        if (keys.isEmpty()) return;
+        if (!result.isEmpty() && count(result.get(result.size() - 1)) + keys.size() <= BLOCK) {
+            List<String> joined = decode(result.remove(result.size() - 1));
+            joined.addAll(keys);
+            keys = joined;
+        }
+        encode(keys, result);
+    }
+
+    // неизмененный блок переходит как есть, пока не помещается в один блок с предыдущим (тот мог опустеть)
+    private static void append(List<byte[]> result, byte[] block) {
+        if (!result.isEmpty() && count(result.get(result.size() - 1)) + count(block) <= BLOCK) {
+            append(result, decode(block));
+        } else {
+            result.add(block);
+        }
+    }
+
+    private static List<String> merge(List<String> keys, List<String> changed, Predicate<String> contains) {
+        List<String> merged = new ArrayList<>(keys.size() + changed.size());
+        int i = 0;
+        int j = 0;
+        while (i < keys.size() || j < changed.size()) {
+            int cmp = i == keys.size() ? 1 : j == changed.size() ? -1 : keys.get(i).compareTo(changed.get(j));
+            if (cmp < 0) {
+                merged.add(keys.get(i++));
+                continue;
+            }
+            if (cmp == 0) i++;
+            String key = changed.get(j++);
+            if (contains.test(key)) merged.add(key);
+        }
+        return merged;
+    }
+
+    /**
+     * До limit нормализованных ключей, начинающихся с normalizedPrefix, по возрастанию: точное совпадение идет первым.
+     */
+    public List<String> complete(String normalizedPrefix, int limit) {
+        if (normalizedPrefix.isEmpty() || blocks.length == 0) return List.of();
+        List<String> result = new ArrayList<>(Math.max(0, limit));
+        for (int b = blockOf(normalizedPrefix); b < blocks.length && result.size() < limit; b++) {
+            for (String key : decode(blocks[b])) {
+                if (key.compareTo(normalizedPrefix) < 0) continue;
+                if (!key.startsWith(normalizedPrefix) || result.size() == limit) return result;
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    // последний блок, первый ключ которого не больше key (0, если таких нет): в нем key стоит или должен стоять
+    private int blockOf(String key) {
+        int lo = 0;
+        int hi = blocks.length - 1;
+        int block = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (head(blocks[mid]).compareTo(key) <= 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return block;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int blockCount() {
+        return blocks.length;
+    }
+
+    // сколько занимают блоки вместе с заголовками массивов и ссылками на них
+    long sizeInBytes() {
+        long bytes = 16L + 4L * blocks.length;
+        for (byte[] block : blocks) bytes += 16 + block.length;
+        return bytes;
+    }
+
+    /**
+     * Блок: число ключей, затем ключи; у первого общий префикс нулевой. Ключи делятся на блоки поровну,
+     * чтобы после разделения переполненного блока не оставалось почти пустого хвоста.
+     */
+    private static void encode(List<String> keys, List<byte[]> blocks) {
+        int parts = (keys.size() + BLOCK - 1) / BLOCK;
+        for (int part = 0, from = 0; part < parts; part++) {
+            int to = (int) ((long) keys.size() * (part + 1) / parts);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeVarInt(out, to - from);
+            byte[] previous = new byte[0];
+            for (int i = from; i < to; i++) {
+                byte[] current = keys.get(i).getBytes(StandardCharsets.UTF_8);
+                int shared = 0;
+                int max = Math.min(previous.length, current.length);
+                while (shared < max && previous[shared] == current[shared]) shared++;
+                writeVarInt(out, shared);
+                writeVarInt(out, current.length - shared);
+                out.write(current, shared, current.length - shared);
+                previous = current;
+            }
+            blocks.add(out.toByteArray());
+            from = to;
+        }
+    }
+
+    private static List<String> decode(byte[] block) {
+        int[] pos = {0};
+        int count = readVarInt(block, pos);
+        List<String> keys = new ArrayList<>(count);
+        byte[] buffer = new byte[64];
+        for (int i = 0; i < count; i++) {
+            int shared = readVarInt(block, pos);
+            int suffix = readVarInt(block, pos);
+            if (shared + suffix > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(shared + suffix, buffer.length * 2));
+            System.arraycopy(block, pos[0], buffer, shared, suffix);
+            pos[0] += suffix;
+            keys.add(new String(buffer, 0, shared + suffix, StandardCharsets.UTF_8));
+        }
+        return keys;
+    }
+
+    private static int count(byte[] block) {
+        return readVarInt(block, new int[]{0});
+    }
+
+    private static String head(byte[] block) {
+        int[] pos = {0};
+        readVarInt(block, pos);
+        readVarInt(block, pos);
+        int length = readVarInt(block, pos);
+        return new String(block, pos[0], length, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while (value >= 0x80) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] data, int[] pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
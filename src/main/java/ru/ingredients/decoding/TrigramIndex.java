@@ -0,0 +1,202 @@
+package ru.ingredients.decoding;
+
+import java.util.*;
+
+/**
+ * Триграммный индекс по нормализованным наименованиям для нечеткого поиска.
+ * Кандидаты отбираются по редким триграммам запроса, затем проверяются ограниченным расстоянием Левенштейна,
+ * поэтому поиск не перебирает весь словарь.
+ */
+public final class TrigramIndex {
+
+    // сколько кандидатов проверяем расстоянием Левенштейна на один запрос
+    private static final int MAX_CANDIDATES = 2_000;
+
+    private static final char PAD = ' ';
+
+    private final String[] words;
+    private final TrigramIds trigramIds = new TrigramIds();
+    // списки слов по номерам триграмм в формате CSR: слова триграммы t лежат в postingWords[postingStart[t] .. postingStart[t + 1])
+    private final int[] postingStart;
+    private final int[] postingWords;
+
+    public TrigramIndex(Collection<String> normalizedNames) {
+        words = normalizedNames.stream().filter(n -> !n.isEmpty()).distinct().toArray(String[]::new);
+
+        // два прохода по словам на примитивных массивах: счет длин списков, затем заполнение
+        int[] sizes = new int[1024];
+        for (String word : words) {
+            for (long trigram : trigrams(word)) {
+                int id = trigramIds.getOrAdd(trigram);
+                if (id == sizes.length) sizes = Arrays.copyOf(sizes, sizes.length * 2);
+                sizes[id]++;
+            }
+        }
+        postingStart = new int[trigramIds.size() + 1];
+        for (int t = 0; t < trigramIds.size(); t++) postingStart[t + 1] = postingStart[t] + sizes[t];
+        postingWords = new int[postingStart[trigramIds.size()]];
+        int[] filled = Arrays.copyOf(postingStart, trigramIds.size());
+        for (int w = 0; w < words.length; w++) {
+            for (long trigram : trigrams(words[w])) postingWords[filled[trigramIds.get(trigram)]++] = w;
+        }
+    }
+
+    /**
+     * До limit наименований, ближайших к запросу по расстоянию Левенштейна (не больше maxDistance(query)).
+     * Поиск прекращается по достижении deadline (System.nanoTime()), возвращается найденное к этому моменту.
+     */
+    public List<String> search(String normalizedQuery, int limit, long deadline) {
+        if (normalizedQuery.isEmpty() || words.length == 0) return List.of();
+        int maxDistance = maxDistance(normalizedQuery);
+
+        // у похожего слова общих триграмм не меньше, чем |T| - 3k (одна правка портит не больше трех),
+        // значит, оно обязательно встретится в одном из |T| - minShared + 1 самых редких списков;
+        // списки упорядочиваем по длине, упаковав длину и номер триграммы в одно число
+        long[] trigrams = trigrams(normalizedQuery);
+        long[] lists = new long[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            int id = trigramIds.get(trigrams[i]);
+            lists[i] = id == -1 ? 0 : (long) (postingStart[id + 1] - postingStart[id]) << 32 | (id + 1);
+        }
+        Arrays.sort(lists);
+        int minShared = Math.max(1, lists.length - 3 * maxDistance);
+        int generating = lists.length - minShared + 1;
+
+        // собираем вхождения из порождающих списков и считаем общие триграммы у каждого кандидата
+        int total = 0;
+        for (int i = 0; i < generating; i++) total += (int) (lists[i] >>> 32);
+        int[] occurrences = new int[total];
+        int filled = 0;
+        for (int i = 0; i < generating && System.nanoTime() < deadline; i++) {
+            if (lists[i] == 0) continue;
+            int id = (int) lists[i] - 1;
+            int size = postingStart[id + 1] - postingStart[id];
+            System.arraycopy(postingWords, postingStart[id], occurrences, filled, size);
+            filled += size;
+        }
+        Arrays.sort(occurrences, 0, filled);
+        List<Scored> candidates = new ArrayList<>();
+        for (int i = 0; i < filled; ) {
+            int j = i;
+            while (j < filled && occurrences[j] == occurrences[i]) j++;
+            candidates.add(new Scored(occurrences[i], j - i, 0));
+            i = j;
+        }
+        // сначала проверяем кандидатов с наибольшим числом общих редких триграмм
+        candidates.sort(Comparator.comparingInt((Scored c) -> -c.shared()));
+
+        List<Scored> found = new ArrayList<>();
+        for (int i = 0; i < candidates.size() && i < MAX_CANDIDATES; i++) {
+            if ((i & 63) == 0 && System.nanoTime() >= deadline) break;
+            Scored candidate = candidates.get(i);
+            int distance = distance(normalizedQuery, words[candidate.word()], maxDistance);
+            if (distance <= maxDistance) found.add(new Scored(candidate.word(), candidate.shared(), distance));
+        }
+        found.sort(Comparator.comparingInt(Scored::distance).thenComparingInt(c -> -c.shared()));
+        return found.stream().limit(limit).map(c -> words[c.word()]).toList();
+    }
+
+    // допустимое число опечаток зависит от длины наименования
+    static int maxDistance(String word) {
+        if (word.length() <= 4) return 1;
+        if (word.length() <= 10) return 2;
+        return 3;
+    }
+
+    // расстояние Левенштейна или max + 1, если оно больше max
+    static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) return max + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) return max + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    // различные триграммы слова, дополненного двумя пробелами в начале и одним в конце, по возрастанию
+    private static long[] trigrams(String word) {
+        String padded = "" + PAD + PAD + word + PAD;
+        long[] result = new long[padded.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (long trigram : result) {
+            if (distinct == 0 || result[distinct - 1] != trigram) result[distinct++] = trigram;
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    private record Scored(int word, int shared, int distance) {
+    }
+
+    // триграмма → номер по порядку появления; открытая адресация без упаковки ключей в Long.
+    // Ноль служит пустой ячейкой: в триграмме всегда есть буква, цифра или пробел, поэтому она не равна нулю
+    private static final class TrigramIds {
+
+        private long[] keys = new long[1024];
+        private int[] ids = new int[1024];
+        private int size;
+
+        int get(long trigram) {
+            int mask = keys.length - 1;
+            for (int i = slot(trigram, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == trigram) return ids[i];
+            }
+            return -1;
+        }
+
+        int getOrAdd(long trigram) {
+            int mask = keys.length - 1;
+            int i = slot(trigram, mask);
+            for (; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == trigram) return ids[i];
+            }
+            keys[i] = trigram;
+            ids[i] = size++;
+            if (size * 2 > keys.length) grow();
+            return size - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) continue;
+                int i = slot(oldKeys[j], mask);
+                while (keys[i] != 0) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                ids[i] = oldIds[j];
+            }
+        }
+
+        private static int slot(long trigram, int mask) {
+            long h = trigram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.ingredients.ingredient;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Версия каталога ингредиентов для условных GET списка и поиска: меняется после каждого сохранения, загрузки
+ * или удаления. Хранится в памяти, поэтому ответ на If-None-Match / If-Modified-Since не требует обращения к БД.
+ * Страница одного ингредиента проверяется по его updated_at.
+ */
+@Component
+public class CatalogVersion {
+
+    // отличает версии разных запусков приложения
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private long counter;
+    private long lastModified = Instant.now().truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(IngredientSavedEvent ignoredEvent) {
+        changed();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImported(IngredientsImportedEvent ignoredEvent) {
+        changed();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(IngredientDeletedEvent ignoredEvent) {
+        changed();
+    }
+
+    // Last-Modified передается с точностью до секунды, поэтому каждое изменение сдвигает его хотя бы на секунду
+    private synchronized void changed() {
+        counter++;
+        long now = Instant.now().truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+        lastModified = Math.max(now, lastModified + 1000);
+    }
+
+    public synchronized String etag() {
+        return "\"" + epoch + "-" + counter + "\"";
+    }
+
+    public synchronized long lastModified() {
+        return lastModified;
+    }
+}
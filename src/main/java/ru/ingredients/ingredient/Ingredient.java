@@ -1,17 +1,26 @@
 package ru.ingredients.ingredient;
 
 import jakarta.persistence.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
 import org.hibernate.type.SqlTypes;
 import ru.ingredients.category.Category;
+import ru.ingredients.utils.NormalizationUtils;
 
+import java.time.Instant;
 import java.util.HashSet;
-import java.util.Objects;
 import java.util.Set;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "ingredient_trade_name_id_idx", columnList = "trade_name, id"))
 public class Ingredient {
 
+    static final String NORMALIZED_NAME_CONSTRAINT = "ingredient_normalized_names_normalized_name_key";
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     @Column(name = "id", nullable = false)
@@ -27,16 +36,37 @@ public class Ingredient {
     private String description;
 
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @CollectionTable(indexes = @Index(name = "ingredient_other_names_ingredient_id_idx", columnList = "ingredient_id"))
     private Set<String> otherNames = new HashSet<>();
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(
             name = "ingredient_category",
             joinColumns = @JoinColumn(name = "ingredient_id"),
-            inverseJoinColumns = @JoinColumn(name = "category_id")
+            inverseJoinColumns = @JoinColumn(name = "category_id"),
+            indexes = @Index(name = "ingredient_category_ingredient_id_idx", columnList = "ingredient_id")
     )
     private Set<Category> categories = new HashSet<>();
 
+    // нормализованные формы всех наименований, по ним идет индексированный поиск;
+    // уникальность в базе не дает двум ингредиентам получить одно наименование
+    @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @CollectionTable(
+            name = "ingredient_normalized_names",
+            joinColumns = @JoinColumn(name = "ingredient_id"),
+            uniqueConstraints = @UniqueConstraint(name = Ingredient.NORMALIZED_NAME_CONSTRAINT,
+                    columnNames = "normalized_name")
+    )
+    @Column(name = "normalized_name", nullable = false)
+    private Set<String> normalizedNames = new HashSet<>();
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private Instant updatedAt;
+
     public Ingredient() {
     }
 
@@ -102,6 +132,31 @@ public class Ingredient {
         return this;
     }
 
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Set<String> getNormalizedNames() {
+        return normalizedNames;
+    }
+
+    // при обновлении вызывается сервисом перед save: менять коллекции во время flush нельзя
+    @PrePersist
+    public void updateNormalizedNames() {
+        Set<String> names = new HashSet<>();
+        addNormalizedName(names, inci);
+        addNormalizedName(names, tradeName);
+        otherNames.forEach(n -> addNormalizedName(names, n));
+        // меняем содержимое, а не ссылку, чтобы Hibernate обновил только изменившиеся строки
+        normalizedNames.retainAll(names);
+        normalizedNames.addAll(names);
+    }
+
+    private static void addNormalizedName(Set<String> names, String name) {
+        String normalized = NormalizationUtils.normalize(name);
+        if (!normalized.isEmpty()) names.add(normalized);
+    }
+
     @Override
     public String toString() {
         return "Ingredient{" +
@@ -114,20 +169,18 @@ public class Ingredient {
                 '}';
     }
 
+    // равенство по id: коллекции ленивые, а поля меняются у сохраненной сущности. Несохраненная сущность
+    // равна только самой себе; hashCode постоянный, чтобы не менялся после присвоения id при сохранении
     @Override
     public boolean equals(Object o) {
-        if (o == null || getClass() != o.getClass()) return false;
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Ingredient that = (Ingredient) o;
-        return Objects.equals(id, that.id) &&
-                Objects.equals(inci, that.inci) &&
-                Objects.equals(tradeName, that.tradeName) &&
-                Objects.equals(description, that.description) &&
-                Objects.equals(otherNames, that.otherNames) &&
-                Objects.equals(categories, that.categories);
+        return id != null && id.equals(that.getId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, inci, tradeName, description, otherNames, categories);
+        return Ingredient.class.hashCode();
     }
 }
@@ -1,33 +1,96 @@
 package ru.ingredients.ingredient;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import ru.ingredients.category.CategoryService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 @Controller
 @RequestMapping("/ingredients")
 public class IngredientController {
 
+    // анонимные страницы одинаковы для всех, их может держать у себя CDN; вход меняет страницу, отсюда Vary: Cookie
+    private static final CacheControl PUBLIC_CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(1)).cachePublic();
+    private static final CacheControl PRIVATE_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     private final IngredientService ingredientService;
     private final CategoryService categoryService;
+    private final CatalogVersion catalogVersion;
+    private final IngredientImporter ingredientImporter;
+    private final IngredientExporter ingredientExporter;
 
-    public IngredientController(IngredientService ingredientService, CategoryService categoryService) {
+    public IngredientController(IngredientService ingredientService, CategoryService categoryService,
+                                CatalogVersion catalogVersion, IngredientImporter ingredientImporter,
+                                IngredientExporter ingredientExporter) {
         this.ingredientService = ingredientService;
         this.categoryService = categoryService;
+        this.catalogVersion = catalogVersion;
+        this.ingredientImporter = ingredientImporter;
+        this.ingredientExporter = ingredientExporter;
     }
 
     @GetMapping("")
-    public String getAllIngredients(Model model) {
-        model.addAttribute("ingredients", ingredientService.getAllIngredients());
+    public String getAllIngredients(@RequestParam(value = "after", required = false) String after,
+                                    @RequestParam(value = "size", defaultValue = "" + IngredientService.DEFAULT_PAGE_SIZE) int size,
+                                    Model model, Principal principal, WebRequest webRequest,
+                                    HttpServletResponse response) {
+        if (checkNotModified(model, principal, webRequest, response)) {
+            return null;
+        }
+        IngredientCursor cursor;
+        try {
+            cursor = after == null || after.isEmpty() ? null : IngredientCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        IngredientPage page = ingredientService.getIngredientsPage(cursor, size);
+        model.addAttribute("ingredients", page.ingredients());
+        if (page.next() != null) {
+            model.addAttribute("next", page.next().encode());
+        }
+        model.addAttribute("firstPage", cursor == null);
         return "ingredient/ingredients";
     }
 
+    @GetMapping("/search")
+    public String searchIngredients(@RequestParam(value = "q", defaultValue = "") String query,
+                                    @RequestParam(value = "page", defaultValue = "0") int page,
+                                    Model model, Principal principal, WebRequest webRequest,
+                                    HttpServletResponse response) {
+        if (checkNotModified(model, principal, webRequest, response)) {
+            return null;
+        }
+        model.addAttribute("query", query);
+        model.addAttribute("result", ingredientService.searchIngredients(query, page));
+        return "ingredient/search";
+    }
+
     @GetMapping("/new")
     public String getNewIngredientForm(@ModelAttribute("ingredient") IngredientDTO ignoredIngredient, Model model) {
         model.addAttribute("allCategories", categoryService.getAllCategories());
@@ -48,12 +111,60 @@ public class IngredientController {
         return "redirect:/ingredients/" + ingredient.getId();
     }
 
+    // формат определяется по расширению файла: .json или CSV
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseBody
+    public IngredientImportResult importIngredients(@RequestParam MultipartFile file,
+                                                    @RequestParam(defaultValue = ",") char delimiter) throws IOException {
+        String fileName = file.getOriginalFilename();
+        try (InputStream in = file.getInputStream()) {
+            if (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".json")) {
+                return ingredientImporter.importJson(in);
+            }
+            return ingredientImporter.importCsv(new InputStreamReader(in, StandardCharsets.UTF_8), delimiter);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // весь каталог пишется прямо в ответ по мере чтения из БД, при gzip=true - сжатым файлом
+    @GetMapping("/export")
+    public void exportIngredients(@RequestParam(defaultValue = "csv") String format,
+                                  @RequestParam(defaultValue = "false") boolean gzip,
+                                  HttpServletResponse response) throws IOException {
+        boolean json = switch (format) {
+            case "csv" -> false;
+            case "json" -> true;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Неизвестный формат " + format);
+        };
+        String fileName = "ingredients." + format + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : json ? "application/json" : "text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName).build().toString());
+        OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), 64 * 1024) : response.getOutputStream();
+        if (json) {
+            ingredientExporter.exportJson(out);
+        } else {
+            ingredientExporter.exportCsv(out);
+        }
+        if (out instanceof GZIPOutputStream gzipOut) {
+            gzipOut.finish();
+        }
+        out.flush();
+    }
+
     @GetMapping("/{id}")
-    public String getIngredient(@PathVariable(value = "id") long id, Model model, RedirectAttributes redirectAttributes) {
+    public String getIngredient(@PathVariable(value = "id") long id, Model model, RedirectAttributes redirectAttributes,
+                                Principal principal, WebRequest webRequest, HttpServletResponse response) {
+        if (checkNotModified(id, model, principal, webRequest, response)) {
+            return null;
+        }
         IngredientDTO ingredient;
         try {
             ingredient = ingredientService.getIngredientById(id);
         } catch (NoSuchElementException e) {
+            // перенаправление с flash-сообщением привязано к сессии, его кэшировать нельзя
+            response.setHeader(HttpHeaders.CACHE_CONTROL, PRIVATE_CACHE_CONTROL.getHeaderValue());
             redirectAttributes.addFlashAttribute("errorMessage", "Ингредиент не найден");
             return "redirect:/ingredients";
         }
@@ -94,4 +205,34 @@ public class IngredientController {
         ingredientService.deleteIngredient(id);
         return "redirect:/ingredients";
     }
+
+    // true, если у клиента актуальная версия страницы и уже выставлен ответ 304. Списки зависят от всего каталога,
+    // включая удаления, которых не видно по updated_at, поэтому их версия - CatalogVersion
+    private boolean checkNotModified(Model model, Principal principal, WebRequest webRequest,
+                                     HttpServletResponse response) {
+        return isPublic(model, principal, response)
+                && webRequest.checkNotModified(catalogVersion.etag(), catalogVersion.lastModified());
+    }
+
+    // страница ингредиента зависит только от его строки: валидаторы берутся из updated_at
+    private boolean checkNotModified(long id, Model model, Principal principal, WebRequest webRequest,
+                                     HttpServletResponse response) {
+        if (!isPublic(model, principal, response)) return false;
+        Optional<Instant> updatedAt = ingredientService.getUpdatedAt(id);
+        if (updatedAt.isEmpty()) return false;
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, updatedAt.get());
+        return webRequest.checkNotModified("\"" + id + "-" + Long.toString(micros, 36) + "\"",
+                updatedAt.get().toEpochMilli());
+    }
+
+    // выставляет Cache-Control; true, если страницу можно отдавать из общего кэша
+    private static boolean isPublic(Model model, Principal principal, HttpServletResponse response) {
+        if (principal != null || model.containsAttribute("errorMessage")) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, PRIVATE_CACHE_CONTROL.getHeaderValue());
+            return false;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, PUBLIC_CACHE_CONTROL.getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.COOKIE);
+        return true;
+    }
 }
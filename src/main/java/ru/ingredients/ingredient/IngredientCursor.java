@@ -0,0 +1,28 @@
+package ru.ingredients.ingredient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в списке ингредиентов, упорядоченном по (tradeName, id): последний показанный ингредиент.
+ * В ссылке передается как base64url от "id:tradeName", поэтому не зависит от вставок и удалений перед ней.
+ */
+public record IngredientCursor(String tradeName, long id) {
+
+    public static IngredientCursor after(IngredientSummary ing) {
+        return new IngredientCursor(ing.tradeName(), ing.id());
+    }
+
+    public String encode() {
+        byte[] bytes = (id + ":" + tradeName).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // IllegalArgumentException, если строка повреждена
+    public static IngredientCursor decode(String encoded) {
+        String value = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+        int colon = value.indexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("Некорректная позиция в списке");
+        return new IngredientCursor(value.substring(colon + 1), Long.parseLong(value.substring(0, colon)));
+    }
+}
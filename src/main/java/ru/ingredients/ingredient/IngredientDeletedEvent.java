@@ -0,0 +1,4 @@
+package ru.ingredients.ingredient;
+
+public record IngredientDeletedEvent(long id) {
+}
@@ -0,0 +1,140 @@
+package ru.ingredients.ingredient;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ingredients.category.CategoryDTO;
+import ru.ingredients.category.CategoryService;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка всего каталога в CSV или JSON с постоянным расходом памяти.
+ * Строки читаются курсором порциями по FETCH_SIZE и сразу пишутся в выходной поток: ни сущностей,
+ * ни контекста персистентности, ни списка всего каталога в памяти нет.
+ */
+@Service
+public class IngredientExporter {
+
+    // строк за одно обращение к курсору
+    static final int FETCH_SIZE = 1_000;
+
+    // колонки совпадают с форматом загрузки (IngredientImporter), лишние id и categories он пропускает
+    static final List<String> CSV_COLUMNS =
+            List.of("id", "inci", "trade_name", "description", "other_names", "category_ids", "categories");
+
+    private static final String VALUES_DELIMITER = "; ";
+
+    // коллекции собираются в массивы по индексам на ingredient_id, поэтому первые строки идут клиенту сразу,
+    // без агрегации всей таблицы на сервере
+    private static final String EXPORT_QUERY = """
+            SELECT i.id, i.inci, i.trade_name, i.description,
+                   ARRAY(SELECT o.other_names FROM ingredient_other_names o
+                         WHERE o.ingredient_id = i.id ORDER BY o.other_names) AS other_names,
+                   ARRAY(SELECT c.category_id FROM ingredient_category c
+                         WHERE c.ingredient_id = i.id ORDER BY c.category_id) AS category_ids
+            FROM ingredient i
+            ORDER BY i.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CategoryService categoryService;
+    private final ObjectMapper objectMapper;
+
+    public IngredientExporter(DataSource dataSource, PlatformTransactionManager transactionManager,
+                              CategoryService categoryService, ObjectMapper objectMapper) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        // драйвер PostgreSQL читает результат курсором только внутри транзакции
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.categoryService = categoryService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * CSV с колонками CSV_COLUMNS, несколько значений в ячейке разделены "; ". Поток out не закрывается.
+     */
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
+        printer.printRecord(CSV_COLUMNS);
+        forEachIngredient(ing -> printer.printRecord(
+                ing.getId(),
+                ing.getInci(),
+                ing.getTradeName(),
+                ing.getDescription(),
+                String.join(VALUES_DELIMITER, ing.getOtherNames()),
+                ing.getCategories().stream().map(c -> String.valueOf(c.getId())).collect(Collectors.joining(VALUES_DELIMITER)),
+                ing.getCategories().stream().map(CategoryDTO::getName).collect(Collectors.joining(VALUES_DELIMITER))));
+        printer.flush();
+    }
+
+    /**
+     * JSON-массив объектов IngredientDTO, тот же формат принимает загрузка. Поток out не закрывается.
+     */
+    public void exportJson(OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartArray();
+            forEachIngredient(generator::writeObject);
+            generator.writeEndArray();
+        }
+    }
+
+    private void forEachIngredient(IngredientWriter writer) throws IOException {
+        // категорий немного, их названия берем из справочника, а не соединением в запросе
+        Map<Long, CategoryDTO> categories = categoryService.getAllCategories().stream()
+                .collect(Collectors.toMap(CategoryDTO::getId, Function.identity()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<IngredientDTO> ingredients = jdbcTemplate.queryForStream(EXPORT_QUERY,
+                        (rs, rowNum) -> toDto(rs, categories))) {
+                    ingredients.forEach(ing -> {
+                        try {
+                            writer.write(ing);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // клиент оборвал соединение или кончилось место: курсор и транзакция уже закрыты
+            throw e.getCause();
+        }
+    }
+
+    private static IngredientDTO toDto(ResultSet rs, Map<Long, CategoryDTO> categories) throws SQLException {
+        Set<CategoryDTO> ingCategories = new LinkedHashSet<>();
+        for (Long id : (Long[]) rs.getArray("category_ids").getArray()) {
+            ingCategories.add(categories.getOrDefault(id, new CategoryDTO(id, null)));
+        }
+        return new IngredientDTO(
+                rs.getLong("id"),
+                rs.getString("inci"),
+                rs.getString("trade_name"),
+                rs.getString("description"),
+                new LinkedHashSet<>(Arrays.asList((String[]) rs.getArray("other_names").getArray())),
+                ingCategories);
+    }
+
+    @FunctionalInterface
+    private interface IngredientWriter {
+        void write(IngredientDTO ingredient) throws IOException;
+    }
+}
@@ -0,0 +1,5 @@
+package ru.ingredients.ingredient;
+
+// row - номер записи в файле, начиная с 1 (заголовок CSV не считается)
+public record IngredientImportError(long row, String message) {
+}
@@ -0,0 +1,6 @@
+package ru.ingredients.ingredient;
+
+import java.util.List;
+
+public record IngredientImportResult(int imported, List<IngredientImportError> errors) {
+}
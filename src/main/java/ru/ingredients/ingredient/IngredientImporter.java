@@ -0,0 +1,391 @@
+package ru.ingredients.ingredient;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ingredients.category.CategoryDTO;
+import ru.ingredients.category.CategoryService;
+import ru.ingredients.utils.NormalizationUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Types;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static ru.ingredients.utils.CsvUtils.skipBom;
+
+/**
+ * Массовая загрузка ингредиентов из CSV или JSON.
+ * Записи обрабатываются порциями: совпадения наименований проверяются в памяти со всей загрузкой
+ * и одним запросом с каталогом в той же транзакции, в которой порция пишется пакетами JDBC.
+ * Ошибочные записи пропускаются и попадают в отчет, остальные сохраняются.
+ */
+@Service
+public class IngredientImporter {
+
+    // записей в одной транзакции: одна проверка по каталогу и один flush на порцию
+    static final int CHUNK_SIZE = 1_000;
+
+    static final List<String> REQUIRED_COLUMNS = List.of("inci", "trade_name");
+
+    private static final String VALUES_DELIMITER = ";";
+
+    // размеры колонок из схемы: длинное значение отклоняется до вставки, а не роняет пакет
+    static final int NAME_MAX_LENGTH = 255;
+    static final int DESCRIPTION_MAX_LENGTH = 32_600;
+
+    // типы параметров указаны явно, иначе для каждого null драйвер запрашивал бы метаданные запроса
+    private static final int[] NAME_ROW_TYPES = {Types.BIGINT, Types.VARCHAR};
+
+    private final CategoryService categoryService;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final BeforeExecutionGenerator idGenerator;
+
+    public IngredientImporter(CategoryService categoryService, EntityManager entityManager,
+                              EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                              ObjectMapper objectMapper) {
+        this.categoryService = categoryService;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        // тот же генератор, что и при save: id из пула не пересекаются с сохраненными через JPA
+        this.idGenerator = (BeforeExecutionGenerator) entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(Ingredient.class)
+                .getGenerator();
+    }
+
+    /**
+     * CSV с заголовком: inci, trade_name и необязательные description, other_names, category_ids
+     * (несколько значений через ";"). Если обязательной колонки нет, бросает IllegalArgumentException.
+     */
+    public IngredientImportResult importCsv(Reader in, char delimiter) throws IOException {
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setDelimiter(delimiter)
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreEmptyLines(true)
+                .get();
+        try (CSVParser parser = CSVParser.parse(skipBom(in), format)) {
+            for (String column : REQUIRED_COLUMNS) {
+                if (!parser.getHeaderNames().contains(column)) {
+                    throw new IllegalArgumentException("В файле нет колонки " + column);
+                }
+            }
+            ImportRun run = new ImportRun();
+            long row = 0;
+            Iterator<CSVRecord> records = parser.iterator();
+            try {
+                while (records.hasNext()) {
+                    CSVRecord record = records.next();
+                    row++;
+                    IngredientDTO ing;
+                    try {
+                        ing = fromCsv(record);
+                    } catch (IllegalArgumentException e) {
+                        run.reject(row, e.getMessage());
+                        continue;
+                    }
+                    run.add(row, ing);
+                }
+            } catch (UncheckedIOException e) {
+                // дальше файл не разобрать, сохраненное до этого места остается
+                run.reject(row + 1, "Некорректная строка CSV: " + e.getCause().getMessage());
+            }
+            return run.finish();
+        }
+    }
+
+    /**
+     * JSON-массив объектов в формате IngredientDTO; id ингредиента игнорируется, у категорий учитывается только id.
+     */
+    public IngredientImportResult importJson(InputStream in) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Ожидается JSON-массив ингредиентов");
+            }
+            ImportRun run = new ImportRun();
+            long row = 0;
+            try {
+                for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    if (token == null) throw new IOException("файл оборвался");
+                    row++;
+                    // запись читается деревом, поэтому ошибка в одной записи не сбивает разбор остальных
+                    JsonNode node = parser.readValueAsTree();
+                    IngredientDTO ing;
+                    try {
+                        ing = objectMapper.treeToValue(node, IngredientDTO.class);
+                    } catch (JsonProcessingException e) {
+                        run.reject(row, "Некорректная запись: " + e.getOriginalMessage());
+                        continue;
+                    }
+                    run.add(row, ing);
+                }
+            } catch (IOException e) {
+                run.reject(row + 1, "Некорректный JSON: " + e.getMessage());
+            }
+            return run.finish();
+        }
+    }
+
+    private static IngredientDTO fromCsv(CSVRecord record) {
+        IngredientDTO ing = new IngredientDTO()
+                .setInci(value(record, "inci"))
+                .setTradeName(value(record, "trade_name"))
+                .setDescription(value(record, "description"))
+                .setOtherNames(values(record, "other_names").collect(Collectors.toSet()));
+        Set<CategoryDTO> categories = new HashSet<>();
+        for (String id : values(record, "category_ids").toList()) {
+            try {
+                categories.add(new CategoryDTO(Long.parseLong(id), null));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректный id категории: " + id);
+            }
+        }
+        return ing.setCategories(categories);
+    }
+
+    private static String value(CSVRecord record, String column) {
+        if (!record.isSet(column) || record.get(column).isBlank()) return null;
+        return record.get(column).trim();
+    }
+
+    private static Stream<String> values(CSVRecord record, String column) {
+        String value = value(record, column);
+        if (value == null) return Stream.empty();
+        return Arrays.stream(value.split(VALUES_DELIMITER)).map(String::trim).filter(s -> !s.isEmpty());
+    }
+
+    private record ImportRow(long row, IngredientDTO ingredient) {
+    }
+
+    private record PendingRow(long row, IngredientDTO ingredient, Set<String> names) {
+    }
+
+    // состояние одной загрузки: наименования, занятые предыдущими записями, и накопленные ошибки
+    private final class ImportRun {
+
+        private final Map<String, Long> claimedNames = new HashMap<>();
+        private final List<IngredientImportError> errors = new ArrayList<>();
+        private final List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        private int imported;
+
+        void add(long row, IngredientDTO ing) {
+            chunk.add(new ImportRow(row, ing));
+            if (chunk.size() == CHUNK_SIZE) flushChunk();
+        }
+
+        void reject(long row, String message) {
+            errors.add(new IngredientImportError(row, message));
+        }
+
+        IngredientImportResult finish() {
+            flushChunk();
+            errors.sort(Comparator.comparingLong(IngredientImportError::row));
+            return new IngredientImportResult(imported, List.copyOf(errors));
+        }
+
+        private void flushChunk() {
+            if (chunk.isEmpty()) return;
+            List<PendingRow> valid = new ArrayList<>(chunk.size());
+            for (ImportRow row : chunk) {
+                String error = prepare(row.ingredient());
+                if (error != null) {
+                    reject(row.row(), error);
+                    continue;
+                }
+                valid.add(new PendingRow(row.row(), row.ingredient(), normalizedNamesOf(row.ingredient())));
+            }
+            chunk.clear();
+            save(valid);
+        }
+
+        // проверка по каталогу и вставка идут в одной транзакции; если пакет не записался, строки делятся
+        // пополам, пока ошибка не останется за одной строкой - остальные сохраняются, у ошибочной свое сообщение
+        private void save(List<PendingRow> rows) {
+            if (rows.isEmpty()) return;
+            List<PendingRow> claimed = new ArrayList<>(rows.size());
+            List<IngredientImportError> duplicates = new ArrayList<>();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Map<String, Set<Long>> owners = findOwners(namesOf(rows));
+                    for (PendingRow row : rows) {
+                        String error = checkDuplicates(row, owners);
+                        if (error != null) {
+                            duplicates.add(new IngredientImportError(row.row(), error));
+                            continue;
+                        }
+                        row.names().forEach(name -> claimedNames.put(name, row.row()));
+                        claimed.add(row);
+                    }
+                    insert(claimed);
+                });
+            } catch (DataAccessException e) {
+                claimed.forEach(row -> row.names().forEach(claimedNames::remove));
+                if (rows.size() == 1) {
+                    reject(rows.get(0).row(), saveError(rows.get(0), e));
+                    return;
+                }
+                int half = rows.size() / 2;
+                save(rows.subList(0, half));
+                save(rows.subList(half, rows.size()));
+                return;
+            }
+            imported += claimed.size();
+            errors.addAll(duplicates);
+        }
+
+        private String checkDuplicates(PendingRow row, Map<String, Set<Long>> owners) {
+            Set<Long> ids = new TreeSet<>();
+            row.names().forEach(name -> ids.addAll(owners.getOrDefault(name, Set.of())));
+            if (!ids.isEmpty()) return duplicateError(ids);
+            OptionalLong claimedBy = row.names().stream()
+                    .map(claimedNames::get)
+                    .filter(Objects::nonNull)
+                    .mapToLong(Long::longValue)
+                    .min();
+            if (claimedBy.isPresent()) {
+                return "Перепроверьте все указанные наименования, есть совпадения со строкой " + claimedBy.getAsLong();
+            }
+            return null;
+        }
+
+        // наименование могли сохранить параллельно между проверкой и вставкой: тогда называем, с кем совпадение
+        private String saveError(PendingRow row, DataAccessException e) {
+            if (e instanceof DuplicateKeyException) {
+                Set<Long> ids = new TreeSet<>();
+                findOwners(row.names()).values().forEach(ids::addAll);
+                if (!ids.isEmpty()) return duplicateError(ids);
+            }
+            return "Не удалось сохранить: " + e.getMostSpecificCause().getMessage();
+        }
+    }
+
+    private static String duplicateError(Set<Long> ids) {
+        String ingIds = ids.stream().map(String::valueOf).collect(Collectors.joining(", "));
+        return "Перепроверьте все указанные наименования, есть совпадения с id " + ingIds;
+    }
+
+    private static Set<String> namesOf(List<PendingRow> rows) {
+        Set<String> names = new HashSet<>();
+        rows.forEach(row -> names.addAll(row.names()));
+        return names;
+    }
+
+    // приводит запись к виду для сохранения; возвращает текст ошибки или null
+    private String prepare(IngredientDTO ing) {
+        if (ing.getInci() == null || ing.getInci().isBlank()
+                || ing.getTradeName() == null || ing.getTradeName().isBlank()) {
+            return "Название не может быть пустым";
+        }
+        Set<CategoryDTO> categories = new HashSet<>();
+        if (ing.getCategories() != null) {
+            for (CategoryDTO category : ing.getCategories()) {
+                if (category == null || category.getId() == null) return "Не указан id категории";
+                try {
+                    categories.add(categoryService.getCategoryById(category.getId()));
+                } catch (NoSuchElementException e) {
+                    return "Категория с id " + category.getId() + " не найдена";
+                }
+            }
+        }
+        Set<String> otherNames = ing.getOtherNames() == null ? Set.of() : ing.getOtherNames().stream()
+                .filter(n -> n != null && !n.isBlank())
+                .map(String::trim)
+                .collect(Collectors.toSet());
+        if (ing.getInci().trim().length() > NAME_MAX_LENGTH || ing.getTradeName().trim().length() > NAME_MAX_LENGTH
+                || otherNames.stream().anyMatch(n -> n.length() > NAME_MAX_LENGTH)) {
+            return "Наименование длиннее " + NAME_MAX_LENGTH + " символов";
+        }
+        if (ing.getDescription() != null && ing.getDescription().length() > DESCRIPTION_MAX_LENGTH) {
+            return "Описание длиннее " + DESCRIPTION_MAX_LENGTH + " символов";
+        }
+        ing.setId(null)
+                .setInci(ing.getInci().trim())
+                .setTradeName(ing.getTradeName().trim())
+                .setOtherNames(new HashSet<>(otherNames))
+                .setCategories(categories);
+        return null;
+    }
+
+    private static Set<String> normalizedNamesOf(IngredientDTO ing) {
+        Set<String> names = new HashSet<>();
+        names.add(NormalizationUtils.normalize(ing.getInci()));
+        names.add(NormalizationUtils.normalize(ing.getTradeName()));
+        ing.getOtherNames().forEach(n -> names.add(NormalizationUtils.normalize(n)));
+        names.remove("");
+        return names;
+    }
+
+    // какие из наименований уже есть в каталоге и у каких ингредиентов: один запрос с массивом вместо длинного IN
+    private Map<String, Set<Long>> findOwners(Set<String> names) {
+        Map<String, Set<Long>> owners = new HashMap<>();
+        if (names.isEmpty()) return owners;
+        jdbcTemplate.query("SELECT normalized_name, ingredient_id FROM ingredient_normalized_names WHERE normalized_name = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", names.toArray())),
+                rs -> {
+                    owners.computeIfAbsent(rs.getString(1), n -> new HashSet<>()).add(rs.getLong(2));
+                });
+        return owners;
+    }
+
+    // строки пишутся JDBC-пакетами мимо контекста персистентности: через persist каждая коллекция нового
+    // ингредиента ставила бы блокировку в кэш второго уровня; id выдает генератор сущности (пул из ingredient_seq).
+    // Вызывается внутри транзакции
+    private void insert(List<PendingRow> rows) {
+        if (rows.isEmpty()) return;
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        List<Object[]> ingredients = new ArrayList<>(rows.size());
+        List<Object[]> otherNames = new ArrayList<>();
+        List<Object[]> normalizedNames = new ArrayList<>();
+        List<Object[]> categories = new ArrayList<>();
+        List<IngredientDTO> saved = new ArrayList<>(rows.size());
+        for (PendingRow row : rows) {
+            IngredientDTO ing = row.ingredient();
+            Long id = (Long) idGenerator.generate(session, null, null, EventType.INSERT);
+            ingredients.add(new Object[]{id, ing.getInci(), ing.getTradeName(), ing.getDescription()});
+            ing.getOtherNames().forEach(name -> otherNames.add(new Object[]{id, name}));
+            row.names().forEach(name -> normalizedNames.add(new Object[]{id, name}));
+            ing.getCategories().forEach(category -> categories.add(new Object[]{category.getId(), id}));
+            saved.add(ing.setId(id));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO ingredient (id, inci, trade_name, description) VALUES (?, ?, ?, ?)",
+                ingredients, new int[]{Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR});
+        jdbcTemplate.batchUpdate("INSERT INTO ingredient_other_names (ingredient_id, other_names) VALUES (?, ?)",
+                otherNames, NAME_ROW_TYPES);
+        jdbcTemplate.batchUpdate("INSERT INTO ingredient_normalized_names (ingredient_id, normalized_name) VALUES (?, ?)",
+                normalizedNames, NAME_ROW_TYPES);
+        jdbcTemplate.batchUpdate("INSERT INTO ingredient_category (category_id, ingredient_id) VALUES (?, ?)",
+                categories, new int[]{Types.BIGINT, Types.BIGINT});
+        eventPublisher.publishEvent(new IngredientsImportedEvent(saved));
+    }
+}
@@ -0,0 +1,9 @@
+package ru.ingredients.ingredient;
+
+import java.util.List;
+
+/**
+ * Страница списка ингредиентов и позиция для следующей страницы (null, если страница последняя).
+ */
+public record IngredientPage(List<IngredientSummary> ingredients, IngredientCursor next) {
+}
@@ -1,21 +1,69 @@
 package ru.ingredients.ingredient;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
 
-    //TODO вынести все REGEXP_REPLACE сразу в БД
+    // поиск идет по индексу ingredient_normalized_names.normalized_name
     @Query("""
             SELECT DISTINCT i
             FROM Ingredient i
-            LEFT JOIN FETCH i.otherNames o
-            WHERE LOWER(FUNCTION('REGEXP_REPLACE', FUNCTION('REGEXP_REPLACE', i.inci, '\\(.+?\\)', ''), '\\W+', '', 'g')) IN :normalizedNames
-               OR LOWER(FUNCTION('REGEXP_REPLACE', FUNCTION('REGEXP_REPLACE', i.tradeName, '\\(.+?\\)', ''), '\\W+', '', 'g')) IN :normalizedNames
-               OR LOWER(FUNCTION('REGEXP_REPLACE', FUNCTION('REGEXP_REPLACE', o, '\\(.+?\\)', ''), '\\W+', '', 'g')) IN :normalizedNames
+            JOIN i.normalizedNames n
+            LEFT JOIN FETCH i.otherNames
+            LEFT JOIN FETCH i.categories
+            WHERE n IN :normalizedNames
             """)
     List<Ingredient> findByAllNames(@Param("normalizedNames") List<String> normalizedNames);
+
+    @Query("""
+            SELECT DISTINCT i
+            FROM Ingredient i
+            LEFT JOIN FETCH i.otherNames
+            LEFT JOIN FETCH i.categories
+            """)
+    List<Ingredient> findAllWithOtherNamesAndCategories();
+
+    // для страницы ингредиента и формы редактирования: все коллекции одним запросом
+    @EntityGraph(attributePaths = {"otherNames", "categories"})
+    Optional<Ingredient> findWithOtherNamesAndCategoriesById(long id);
+
+    // страницы списка берутся по индексу (trade_name, id): дальние страницы стоят столько же, сколько первая;
+    // в списке нужны только id и наименования, поэтому выбираем их проекцией, а не сущностью
+    @Query("""
+            SELECT new ru.ingredients.ingredient.IngredientSummary(i.id, i.tradeName, i.inci)
+            FROM Ingredient i
+            ORDER BY i.tradeName, i.id
+            """)
+    List<IngredientSummary> findFirstPage(Limit limit);
+
+    @Query("""
+            SELECT new ru.ingredients.ingredient.IngredientSummary(i.id, i.tradeName, i.inci)
+            FROM Ingredient i
+            WHERE (i.tradeName, i.id) > (:tradeName, :id)
+            ORDER BY i.tradeName, i.id
+            """)
+    List<IngredientSummary> findPageAfter(@Param("tradeName") String tradeName, @Param("id") long id, Limit limit);
+
+    // ищет по GIN-индексу ingredient.search_vector; фрагменты описания строятся только для строк выбранной страницы
+    @Query(value = """
+            SELECT i.id AS "id", i.trade_name AS "tradeName", i.inci AS "inci",
+                   ts_headline('russian', coalesce(i.description, ''), q.query, :headlineOptions) AS "snippet"
+            FROM (SELECT id, ts_rank(search_vector, query) AS rank
+                  FROM ingredient, websearch_to_tsquery('russian', :query) query
+                  WHERE search_vector @@ query
+                  ORDER BY rank DESC, id
+                  LIMIT :limit OFFSET :offset) r
+            JOIN ingredient i ON i.id = r.id
+            CROSS JOIN websearch_to_tsquery('russian', :query) q(query)
+            ORDER BY r.rank DESC, r.id
+            """, nativeQuery = true)
+    List<IngredientSearchRow> search(@Param("query") String query, @Param("headlineOptions") String headlineOptions,
+                                     @Param("limit") int limit, @Param("offset") int offset);
 }
@@ -0,0 +1,7 @@
+package ru.ingredients.ingredient;
+
+/**
+ * Найденный ингредиент. snippetHtml - экранированный фрагмент описания, совпадения выделены тегом mark.
+ */
+public record IngredientSearchHit(Long id, String tradeName, String inci, String snippetHtml) {
+}
@@ -0,0 +1,11 @@
+package ru.ingredients.ingredient;
+
+import java.util.List;
+
+/**
+ * Страница результатов поиска, упорядоченных по релевантности.
+ */
+public record IngredientSearchPage(List<IngredientSearchHit> hits, int page, boolean hasNext) {
+
+    public static final IngredientSearchPage EMPTY = new IngredientSearchPage(List.of(), 0, false);
+}
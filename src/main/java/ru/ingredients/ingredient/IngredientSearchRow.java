@@ -0,0 +1,15 @@
+package ru.ingredients.ingredient;
+
+/**
+ * Строка результата полнотекстового поиска: фрагмент описания содержит маркеры начала и конца совпадений.
+ */
+public interface IngredientSearchRow {
+
+    Long getId();
+
+    String getTradeName();
+
+    String getInci();
+
+    String getSnippet();
+}
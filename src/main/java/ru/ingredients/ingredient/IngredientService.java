@@ -1,47 +1,133 @@
 package ru.ingredients.ingredient;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
 import ru.ingredients.utils.NormalizationUtils;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 public class IngredientService {
 
+    public static final int DEFAULT_PAGE_SIZE = 48;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    public static final int SEARCH_PAGE_SIZE = 20;
+    // результаты поиска листаются через OFFSET, поэтому глубину ограничиваем
+    public static final int MAX_SEARCH_PAGE = 50;
+
+    // управляющие символы не встречаются в описаниях, по ним после экранирования расставляются теги mark
+    static final String MATCH_START = "\u0002";
+    static final String MATCH_END = "\u0003";
+    static final String HEADLINE_OPTIONS = "StartSel=" + MATCH_START + ", StopSel=" + MATCH_END
+            + ", MaxFragments=2, MaxWords=25, MinWords=10";
+
     private final IngredientRepository ingredientRepository;
     private final IngredientMapper ingredientMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public IngredientService(IngredientRepository ingredientRepository, IngredientMapper ingredientMapper) {
+    public IngredientService(IngredientRepository ingredientRepository, IngredientMapper ingredientMapper,
+                             ApplicationEventPublisher eventPublisher) {
         this.ingredientRepository = ingredientRepository;
         this.ingredientMapper = ingredientMapper;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Страница списка ингредиентов в порядке (tradeName, id) после позиции after (с начала, если after == null).
+     * Размер страницы ограничен MAX_PAGE_SIZE.
+     */
+    @Transactional(readOnly = true)
+    public IngredientPage getIngredientsPage(IngredientCursor after, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // берем на одну запись больше, чтобы узнать, есть ли следующая страница
+        Limit limit = Limit.of(pageSize + 1);
+        List<IngredientSummary> found = after == null
+                ? ingredientRepository.findFirstPage(limit)
+                : ingredientRepository.findPageAfter(after.tradeName(), after.id(), limit);
+        List<IngredientSummary> ingredients = found.size() > pageSize ? found.subList(0, pageSize) : found;
+        IngredientCursor next = found.size() > pageSize ? IngredientCursor.after(ingredients.get(pageSize - 1)) : null;
+        return new IngredientPage(ingredients, next);
+    }
+
+    /**
+     * Полнотекстовый поиск по наименованиям и описанию с учетом словоформ (русский и английский),
+     * результаты упорядочены по релевантности. page начинается с 0 и не больше MAX_SEARCH_PAGE.
+     */
+    @Transactional(readOnly = true)
+    public IngredientSearchPage searchIngredients(String query, int page) {
+        if (query == null || query.isBlank()) return IngredientSearchPage.EMPTY;
+        int pageNumber = Math.max(0, Math.min(page, MAX_SEARCH_PAGE));
+        List<IngredientSearchRow> found = ingredientRepository.search(
+                query, HEADLINE_OPTIONS, SEARCH_PAGE_SIZE + 1, pageNumber * SEARCH_PAGE_SIZE);
+        List<IngredientSearchHit> hits = found.stream()
+                .limit(SEARCH_PAGE_SIZE)
+                .map(row -> new IngredientSearchHit(row.getId(), row.getTradeName(), row.getInci(),
+                        highlight(row.getSnippet())))
+                .toList();
+        boolean hasNext = found.size() > SEARCH_PAGE_SIZE && pageNumber < MAX_SEARCH_PAGE;
+        return new IngredientSearchPage(hits, pageNumber, hasNext);
     }
 
-    public List<IngredientDTO> getAllIngredients() {
-        return this.ingredientRepository.findAll().stream().map(ingredientMapper::toMinDto).toList();
+    private static String highlight(String snippet) {
+        if (snippet == null) return "";
+        return HtmlUtils.htmlEscape(snippet).replace(MATCH_START, "<mark>").replace(MATCH_END, "</mark>");
     }
 
+    // словарь для расшифровки загружается из основной базы: с отстающей реплики он мог бы пропустить изменения,
+    // события о которых уже разосланы
+    public List<IngredientDTO> getAllIngredientsWithNames() {
+        return ingredientRepository.findAllWithOtherNamesAndCategories().stream().map(ingredientMapper::toDto).toList();
+    }
+
+    @Transactional(readOnly = true)
     public IngredientDTO getIngredientById(long id) {
-        return ingredientRepository.findById(id).map(ingredientMapper::toDto).orElseThrow();
+        return ingredientRepository.findWithOtherNamesAndCategoriesById(id).map(ingredientMapper::toDto).orElseThrow();
+    }
+
+    // время последнего изменения строки для условных GET страницы ингредиента; сущность обычно
+    // находится в кэше второго уровня, поэтому запроса к БД нет
+    @Transactional(readOnly = true)
+    public Optional<Instant> getUpdatedAt(long id) {
+        return ingredientRepository.findById(id).map(Ingredient::getUpdatedAt);
     }
 
     public IngredientDTO saveIngredient(IngredientDTO ingToSave) {
-        // перед сохранением проверяем, что нет ингредиентов с такими же наименованиями
-        List<IngredientDTO> existingIng = getIngredientsWithSameNames(ingToSave);
-        if (!existingIng.isEmpty()) {
-            String ingIds = existingIng.stream().map(IngredientDTO::getId).map(String::valueOf).collect(Collectors.joining(", "));
+        // совпадения наименований проверяет уникальный индекс в базе, поэтому сохраняем сразу
+        Ingredient ingredient = ingredientMapper.toEntity(ingToSave);
+        ingredient.updateNormalizedNames();
+        Ingredient savedIng;
+        try {
+            savedIng = ingredientRepository.saveAndFlush(ingredient);
+        } catch (DataIntegrityViolationException e) {
+            if (!isNormalizedNameViolation(e)) throw e;
+            // ингредиенты с совпадающими наименованиями ищем только для текста ошибки
+            String ingIds = getIngredientsWithSameNames(ingToSave).stream()
+                    .map(IngredientDTO::getId).map(String::valueOf).collect(Collectors.joining(", "));
             throw new IllegalArgumentException("Перепроверьте все указанные наименования, есть совпадения с id " + ingIds);
         }
-        // сохраняем ингредиент
-        Ingredient savedIng = ingredientRepository.save(ingredientMapper.toEntity(ingToSave));
-        return ingredientMapper.toDto(savedIng);
+        IngredientDTO savedDto = ingredientMapper.toDto(savedIng);
+        // сообщаем об изменении, чтобы обновить словарь для расшифровки
+        eventPublisher.publishEvent(new IngredientSavedEvent(savedDto));
+        return savedDto;
     }
 
+    // проверка и удаление в одной транзакции, чтобы existsById не ушел на реплику
+    @Transactional
     public void deleteIngredient(long id) {
         if (ingredientRepository.existsById(id)) {
             ingredientRepository.deleteById(id);
+            eventPublisher.publishEvent(new IngredientDeletedEvent(id));
         } else throw new NoSuchElementException();
     }
 
@@ -52,6 +138,15 @@ public class IngredientService {
         return foundIngredients.stream().map(ingredientMapper::toDto).toList();
     }
 
+    private static boolean isNormalizedNameViolation(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return Ingredient.NORMALIZED_NAME_CONSTRAINT.equals(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+
     private List<IngredientDTO> getIngredientsWithSameNames(IngredientDTO ingToCheck) {
         // создаем список всех имен для поиска совпадений
         List<String> allNamesToCheck = new ArrayList<>(ingToCheck.getOtherNames());
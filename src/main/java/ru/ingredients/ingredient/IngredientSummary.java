@@ -0,0 +1,9 @@
+package ru.ingredients.ingredient;
+
+/**
+ * Строка списка ингредиентов: только то, что показывается в списке.
+ * Выбирается проекцией в запросе, поэтому не попадает в контекст персистентности
+ * и не тянет описание и коллекции.
+ */
+public record IngredientSummary(Long id, String tradeName, String inci) {
+}
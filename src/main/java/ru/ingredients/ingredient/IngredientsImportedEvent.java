@@ -0,0 +1,7 @@
+package ru.ingredients.ingredient;
+
+import java.util.List;
+
+// одно событие на сохраненную порцию загрузки, а не на каждый ингредиент
+public record IngredientsImportedEvent(List<IngredientDTO> ingredients) {
+}
@@ -0,0 +1,21 @@
+package ru.ingredients.utils;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+public final class CsvUtils {
+
+    private CsvUtils() {
+    }
+
+    /**
+     * Пропускает BOM в начале потока: Excel сохраняет CSV в UTF-8 с BOM, иначе он попадет в название первой колонки.
+     */
+    public static Reader skipBom(Reader in) throws IOException {
+        PushbackReader reader = new PushbackReader(in, 1);
+        int first = reader.read();
+        if (first != -1 && first != '\uFEFF') reader.unread(first);
+        return reader;
+    }
+}
@@ -2,16 +2,124 @@ package ru.ingredients.utils;
 
 public final class NormalizationUtils {
 
-    private static final String REGEX_INSIDE_PARENTHESES = "\\(.+?\\)";
-    private static final String REGEX_NON_ALPHANUMERIC = "[^a-zA-Zа-яА-Я0-9]+";
+    // буфер для normalize, большие строки нормализуются во временный массив
+    private static final int BUFFER_SIZE = 1024;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[BUFFER_SIZE]);
 
     private NormalizationUtils() {
     }
 
+    /**
+     * Убирает информацию в скобках и все не цифро-буквенные символы, приводит к нижнему регистру.
+     * Результат совпадает с s.replaceAll("\\(.+?\\)", "").replaceAll("[^a-zA-Zа-яА-Я0-9]+", "").toLowerCase(),
+     * но строка просматривается один раз; уже нормализованная строка возвращается как есть.
+     */
     public static String normalize(String s) {
-        return s == null ? "" : s
-                .replaceAll(REGEX_INSIDE_PARENTHESES, "") //убирается информация в скобках
-                .replaceAll(REGEX_NON_ALPHANUMERIC, "") //убираются все не цифро-буквенные символы
-                .toLowerCase(); //приводится к нижнему регистру
+        if (s == null) return "";
+        int length = s.length();
+        int i = 0;
+        while (i < length && isNormalized(s.charAt(i))) i++;
+        if (i == length) return s;
+
+        char[] buffer = length <= BUFFER_SIZE ? BUFFER.get() : new char[length];
+        s.getChars(0, i, buffer, 0);
+        int end = normalize(s, i, length, buffer, i);
+        return new String(buffer, 0, end);
+    }
+
+    /**
+     * Нормализует часть s от start до end так же, как normalize(s.substring(start, end)), но без копии подстроки.
+     */
+    public static String normalize(CharSequence s, int start, int end) {
+        char[] buffer = end - start <= BUFFER_SIZE ? BUFFER.get() : new char[end - start];
+        return new String(buffer, 0, normalize(s, start, end, buffer, 0));
+    }
+
+    /**
+     * Дописывает нормализованную строку s в out.
+     */
+    public static StringBuilder normalize(CharSequence s, StringBuilder out) {
+        if (s == null) return out;
+        char[] buffer = s.length() <= BUFFER_SIZE ? BUFFER.get() : new char[s.length()];
+        return out.append(buffer, 0, normalize(s, 0, s.length(), buffer, 0));
+    }
+
+    /**
+     * Записывает нормализованную строку s в dst начиная с offset и возвращает число записанных символов.
+     * Результат не длиннее s, поэтому достаточно s.length() свободных символов в dst.
+     */
+    public static int normalize(CharSequence s, char[] dst, int offset) {
+        if (s == null) return 0;
+        return normalize(s, 0, s.length(), dst, offset) - offset;
+    }
+
+    // нормализует s от from до to, возвращает позицию в dst после последнего записанного символа
+    private static int normalize(CharSequence s, int from, int to, char[] dst, int offset) {
+        int n = offset;
+        int noParenthesesUntil = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '(' && i > noParenthesesUntil) {
+                int close = closingParenthesis(s, i, to);
+                if (close != -1) {
+                    i = close; //убирается информация в скобках
+                    continue;
+                }
+                // до конца строки закрывающей скобки нет ни для одной из следующих открывающих
+                noParenthesesUntil = lineEnd(s, i, to);
+            }
+            if (isAlphanumeric(c)) dst[n++] = toLowerCase(c); //остаются только цифро-буквенные символы в нижнем регистре
+        }
+        return n;
+    }
+
+    // символ, который normalize оставляет без изменений
+    private static boolean isNormalized(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'а' && c <= 'я') || (c >= '0' && c <= '9');
+    }
+
+    // позиция ")", закрывающей "(" в позиции open, по правилам регулярного выражения "\\(.+?\\)", или -1
+    public static int closingParenthesis(CharSequence s, int open) {
+        return closingParenthesis(s, open, s.length());
+    }
+
+    // то же, что closingParenthesis(s, open), но ")" ищется только до позиции end
+    public static int closingParenthesis(CharSequence s, int open, int end) {
+        for (int i = open + 1; i < end; i++) {
+            char c = s.charAt(i);
+            if (isLineTerminator(c)) return -1; // "." в регулярном выражении не захватывает перевод строки
+            if (c == ')' && i > open + 1) return i; // внутри скобок должен быть хотя бы один символ
+        }
+        return -1;
+    }
+
+    // позиция первого перевода строки начиная с from или длина s
+    public static int lineEnd(CharSequence s, int from) {
+        return lineEnd(s, from, s.length());
+    }
+
+    // позиция первого перевода строки начиная с from, но не дальше end
+    public static int lineEnd(CharSequence s, int from, int end) {
+        int i = from;
+        while (i < end && !isLineTerminator(s.charAt(i))) i++;
+        return i;
+    }
+
+    public static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    // символ, который остается после нормализации (см. [^a-zA-Zа-яА-Я0-9])
+    public static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я')
+                || (c >= '0' && c <= '9');
+    }
+
+    // нижний регистр для символов, прошедших isAlphanumeric
+    public static char toLowerCase(char c) {
+        if (c >= 'A' && c <= 'Z') return (char) (c + ('a' - 'A'));
+        if (c >= 'А' && c <= 'Я') return (char) (c + ('а' - 'А'));
+        return c;
     }
 }
@@ -0,0 +1,31 @@
+create sequence category_seq start with 1 increment by 50;
+create sequence ingredient_seq start with 1 increment by 50;
+
+create table category
+(
+    id   bigint not null,
+    name varchar(255),
+    primary key (id)
+);
+
+create table ingredient
+(
+    id          bigint       not null,
+    description varchar(32600),
+    inci        varchar(255) not null,
+    trade_name  varchar(255) not null,
+    primary key (id)
+);
+
+create table ingredient_category
+(
+    category_id   bigint not null references category,
+    ingredient_id bigint not null references ingredient,
+    primary key (category_id, ingredient_id)
+);
+
+create table ingredient_other_names
+(
+    ingredient_id bigint not null references ingredient,
+    other_names   varchar(255)
+);
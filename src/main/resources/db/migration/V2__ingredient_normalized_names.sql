@@ -0,0 +1,10 @@
+-- нормализованные формы inci, trade_name и всех other_names (см. NormalizationUtils.normalize),
+-- заполняются приложением при сохранении и миграцией V3 для существующих строк
+create table ingredient_normalized_names
+(
+    ingredient_id   bigint       not null references ingredient,
+    normalized_name varchar(255) not null,
+    primary key (ingredient_id, normalized_name)
+);
+
+create index ingredient_normalized_names_normalized_name_idx on ingredient_normalized_names (normalized_name);
@@ -0,0 +1,2 @@
+-- список ингредиентов листается по ключу (trade_name, id), индекс отдает любую страницу без сортировки и OFFSET
+create index ingredient_trade_name_id_idx on ingredient (trade_name, id);
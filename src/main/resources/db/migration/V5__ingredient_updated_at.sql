@@ -0,0 +1,2 @@
+-- время последнего изменения строки, заполняется приложением при каждом сохранении
+alter table ingredient add column updated_at timestamp(6) with time zone not null default now();
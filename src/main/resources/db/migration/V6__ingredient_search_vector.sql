@@ -0,0 +1,9 @@
+-- полнотекстовый поиск по наименованиям (вес A) и описанию (вес B), столбец пересчитывается самой БД при каждой записи;
+-- конфигурация russian стеммит кириллицу русским стеммером, а латиницу - английским
+alter table ingredient
+    add column search_vector tsvector generated always as (
+        setweight(to_tsvector('russian'::regconfig, trade_name || ' ' || inci), 'A') ||
+        setweight(to_tsvector('russian'::regconfig, coalesce(description, '')), 'B')
+        ) stored;
+
+create index ingredient_search_vector_idx on ingredient using gin (search_vector);
@@ -0,0 +1,3 @@
+-- строки коллекций ищутся по владельцу: загрузка otherNames и categories ингредиента и выгрузка каталога
+create index ingredient_other_names_ingredient_id_idx on ingredient_other_names (ingredient_id);
+create index ingredient_category_ingredient_id_idx on ingredient_category (ingredient_id);
@@ -0,0 +1,7 @@
+-- одно нормализованное наименование принадлежит не больше чем одному ингредиенту: проверка совпадений
+-- переходит из приложения в базу и не пропускает одновременные сохранения с одинаковыми наименованиями.
+-- если в каталоге уже есть совпадения, миграция упадет, их нужно исправить вручную
+drop index ingredient_normalized_names_normalized_name_idx;
+
+alter table ingredient_normalized_names
+    add constraint ingredient_normalized_names_normalized_name_key unique (normalized_name);
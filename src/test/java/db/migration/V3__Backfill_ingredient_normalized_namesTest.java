@@ -0,0 +1,47 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.Context;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.test.context.ContextConfiguration;
+import ru.ingredients.IngredientsApplication;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@JdbcTest
+@ContextConfiguration(classes = IngredientsApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class V3__Backfill_ingredient_normalized_namesTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrate_backfillsAllNamesOfExistingRows() throws Exception {
+        //given
+        jdbcTemplate.update("INSERT INTO ingredient (id, inci, trade_name) VALUES (-1, 'INCI Name (old)', 'Trade-Name')");
+        jdbcTemplate.update("INSERT INTO ingredient_other_names (ingredient_id, other_names) VALUES (-1, 'Другое имя')");
+        Context context = mock(Context.class);
+        when(context.getConnection()).thenReturn(DataSourceUtils.getConnection(dataSource));
+
+        //when
+        new V3__Backfill_ingredient_normalized_names().migrate(context);
+
+        //then
+        List<String> result = jdbcTemplate.queryForList(
+                "SELECT normalized_name FROM ingredient_normalized_names WHERE ingredient_id = -1", String.class);
+        assertThat(result).containsExactlyInAnyOrder("inciname", "tradename", "другоеимя");
+    }
+}
@@ -0,0 +1,95 @@
+package ru.ingredients.category;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// каждый вызов идет в своей транзакции, как в приложении: кэш второго уровня наполняется после коммита
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({CategoryService.class, CategoryMapperImpl.class, CategoryDirectory.class})
+class CategoryCacheTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private List<Category> categories;
+
+    @BeforeEach
+    void setUp() {
+        categories = categoryRepository.saveAll(List.of(new Category().setName("cat1"), new Category().setName("cat2")));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        categoryRepository.deleteAll(categories);
+    }
+
+    @Test
+    void getAllCategories_isServedFromQueryCache() {
+        //given
+        List<CategoryDTO> first = categoryService.getAllCategories();
+        long statements = statistics.getPrepareStatementCount();
+
+        //when
+        List<CategoryDTO> second = categoryService.getAllCategories();
+
+        //then
+        assertThat(second).containsExactlyInAnyOrderElementsOf(first);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getCategoryById_issuesNoStatementsOnceDirectoryIsFilled() {
+        //given
+        long id = categories.get(1).getId();
+        categoryService.getCategoryById(categories.get(0).getId());
+        long statements = statistics.getPrepareStatementCount();
+
+        //when
+        CategoryDTO result = categoryService.getCategoryById(id);
+
+        //then
+        assertThat(result.getName()).isEqualTo("cat2");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    }
+
+    @Test
+    void findById_isServedFromSecondLevelCache() {
+        //given
+        long id = categories.get(0).getId();
+
+        //when
+        Category result = categoryRepository.findById(id).orElseThrow();
+
+        //then
+        assertThat(result.getName()).isEqualTo("cat1");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(Category.class.getName()).getHitCount()).isEqualTo(1);
+    }
+}
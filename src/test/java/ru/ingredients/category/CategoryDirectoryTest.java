@@ -0,0 +1,91 @@
+package ru.ingredients.category;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryDirectoryTest {
+
+    private final CategoryDirectory categoryDirectory = new CategoryDirectory();
+
+    @Test
+    void registerAll_assignsStableDenseIndexes() {
+        //when
+        categoryDirectory.registerAll(List.of(new CategoryDTO(10L, "B"), new CategoryDTO(20L, "A")));
+        categoryDirectory.registerAll(List.of(new CategoryDTO(20L, "A"), new CategoryDTO(10L, "B")));
+
+        //then
+        assertThat(categoryDirectory.indexOf(new CategoryDTO(10L, "B"))).isZero();
+        assertThat(categoryDirectory.indexOf(new CategoryDTO(20L, "A"))).isEqualTo(1);
+        assertThat(categoryDirectory.state().size()).isEqualTo(2);
+    }
+
+    @Test
+    void registerAll_keepsIndexWhenCategoryIsRenamed() {
+        //given
+        categoryDirectory.registerAll(List.of(new CategoryDTO(10L, "Old")));
+
+        //when
+        categoryDirectory.registerAll(List.of(new CategoryDTO(10L, "New")));
+
+        //then
+        assertThat(categoryDirectory.indexOf(new CategoryDTO(10L, "New"))).isZero();
+        assertThat(categoryDirectory.state().get(0).getName()).isEqualTo("New");
+    }
+
+    @Test
+    void indexOf_neitherRegistersNorRenames() {
+        //given
+        categoryDirectory.registerAll(List.of(new CategoryDTO(10L, "New")));
+
+        //when
+        int stale = categoryDirectory.indexOf(new CategoryDTO(10L, "Old"));
+        int unknown = categoryDirectory.indexOf(new CategoryDTO(20L, "Unknown"));
+
+        //then
+        assertThat(stale).isZero();
+        assertThat(unknown).isEqualTo(-1);
+        assertThat(categoryDirectory.findById(10L).getName()).isEqualTo("New");
+        assertThat(categoryDirectory.findById(20L)).isNull();
+        assertThat(categoryDirectory.state().size()).isEqualTo(1);
+    }
+
+    @Test
+    void state_ordersIndexesByName() {
+        //given
+        categoryDirectory.registerAll(List.of(new CategoryDTO(1L, "B"), new CategoryDTO(2L, "C"), new CategoryDTO(3L, "A")));
+
+        //when
+        CategoryDirectory.State state = categoryDirectory.state();
+
+        //then
+        assertThat(List.of(state.byNameAt(0), state.byNameAt(1), state.byNameAt(2))).containsExactly(2, 0, 1);
+    }
+
+    @Test
+    void bitsOf_setsBitsBeyondFirstWordAndSkipsUnknown() {
+        //given
+        categoryDirectory.registerAll(LongStream.range(0, 70).mapToObj(id -> new CategoryDTO(id, "Category " + id)).toList());
+
+        //when
+        long[] bits = categoryDirectory.bitsOf(List.of(new CategoryDTO(1L, "Category 1"), new CategoryDTO(65L, "Category 65"),
+                new CategoryDTO(100L, "Unknown")));
+
+        //then
+        assertThat(bits).containsExactly(1L << 1, 1L << 1);
+        assertThat(categoryDirectory.findById(100L)).isNull();
+    }
+
+    @Test
+    void findById_returnsRegisteredCategoryOrNull() {
+        //given
+        categoryDirectory.registerAll(List.of(new CategoryDTO(1L, "A"), new CategoryDTO(2L, "B")));
+
+        //when //then
+        assertThat(categoryDirectory.findById(2L)).isEqualTo(new CategoryDTO(2L, "B"));
+        assertThat(categoryDirectory.findById(3L)).isNull();
+    }
+}
@@ -8,12 +8,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class CategoryServiceTest {
@@ -23,11 +21,14 @@ class CategoryServiceTest {
 
     private final CategoryMapper categoryMapper = new CategoryMapperImpl();
 
+    private CategoryDirectory categoryDirectory;
+
     private CategoryService categoryService;
 
     @BeforeEach
     void setUp() {
-        categoryService = new CategoryService(categoryRepository, categoryMapper);
+        categoryDirectory = new CategoryDirectory();
+        categoryService = new CategoryService(categoryRepository, categoryMapper, categoryDirectory);
     }
 
     @Test
@@ -49,30 +50,45 @@ class CategoryServiceTest {
     }
 
     @Test
-    void getCategoryById() {
+    void getCategoryById_refreshesDirectoryOnMiss() {
         //given
         long id = 1L;
         Category cat = new Category(id, "cat");
-        CategoryDTO dto = categoryMapper.toDto(cat);
-        when(categoryRepository.findById(id)).thenReturn(Optional.of(cat));
+        Category other = new Category(2L, "other");
+        when(categoryRepository.findAll()).thenReturn(List.of(cat, other));
 
         //when
         CategoryDTO result = categoryService.getCategoryById(id);
+        CategoryDTO otherResult = categoryService.getCategoryById(2L);
 
         //then
-        assertThat(result).isEqualTo(dto);
-        verify(categoryRepository).findById(id);
+        assertThat(result).isEqualTo(categoryMapper.toDto(cat));
+        assertThat(otherResult).isEqualTo(categoryMapper.toDto(other));
+        verify(categoryRepository).findAll();
+    }
+
+    @Test
+    void getCategoryById_isServedFromDirectory() {
+        //given
+        categoryDirectory.registerAll(List.of(new CategoryDTO(1L, "cat")));
+
+        //when
+        CategoryDTO result = categoryService.getCategoryById(1L);
+
+        //then
+        assertThat(result).isEqualTo(new CategoryDTO(1L, "cat"));
+        verifyNoInteractions(categoryRepository);
     }
 
     @Test
     void getCategoryById_ThrowsExceptionWhenNotFound() {
         //given
         long id = 0L;
-        when(categoryRepository.findById(id)).thenReturn(Optional.empty());
+        when(categoryRepository.findAll()).thenReturn(List.of(new Category(1L, "cat")));
 
         //when //then
         assertThatThrownBy(() -> categoryService.getCategoryById(id))
                 .isInstanceOf(NoSuchElementException.class);
-        verify(categoryRepository).findById(id);
+        verify(categoryRepository).findAll();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package ru.ingredients.config;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.ingredients.category.CategoryMapperImpl;
+import ru.ingredients.ingredient.Ingredient;
+import ru.ingredients.ingredient.IngredientDTO;
+import ru.ingredients.ingredient.IngredientMapperImpl;
+import ru.ingredients.ingredient.IngredientRepository;
+import ru.ingredients.ingredient.IngredientService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// реплику заменяет та же тестовая база через отдельный пул, пулы различаются по application_name
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DataSourceConfig.class, IngredientService.class, IngredientMapperImpl.class, CategoryMapperImpl.class})
+class DataSourceConfigTest {
+
+    private static final String CURRENT_POOL = "SELECT current_setting('application_name')";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private IngredientService ingredientService;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        ingredientRepository.deleteAll();
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        ingredientRepository.deleteAll();
+    }
+
+    @Test
+    void readOnlyTransaction_usesReplica() {
+        //when //then
+        assertThat(currentPool(true)).isEqualTo("replica");
+    }
+
+    @Test
+    void readWriteTransaction_usesPrimary() {
+        //when //then
+        assertThat(currentPool(false)).isEqualTo("primary");
+    }
+
+    @Test
+    void saveIngredient_sendsReadsOfSameRequestToPrimary() {
+        //when
+        ingredientService.saveIngredient(new IngredientDTO().setInci("inci").setTradeName("trade"));
+
+        //then
+        assertThat(request.getSession().getAttribute(ReadYourWrites.LAST_WRITE_LSN)).isNotNull();
+        assertThat(currentPool(true)).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyTransaction_usesPrimaryWhileReplicaIsBehindLastWrite() {
+        //given
+        // позиция журнала, до которой реплика заведомо не дошла
+        request.getSession().setAttribute(ReadYourWrites.LAST_WRITE_LSN, "FFFFFFFF/FFFFFFFF");
+
+        //when //then
+        assertThat(currentPool(true)).isEqualTo("primary");
+        assertThat(request.getSession().getAttribute(ReadYourWrites.LAST_WRITE_LSN)).isNotNull();
+    }
+
+    @Test
+    void readOnlyTransaction_returnsToReplicaWhenItCaughtUp() {
+        //given
+        request.getSession().setAttribute(ReadYourWrites.LAST_WRITE_LSN, "0/0");
+
+        //when //then
+        assertThat(currentPool(true)).isEqualTo("replica");
+        assertThat(request.getSession().getAttribute(ReadYourWrites.LAST_WRITE_LSN)).isNull();
+    }
+
+    @Test
+    void readOnlyTransaction_usesReplicaOutsideHttpRequest() {
+        //given
+        RequestContextHolder.resetRequestAttributes();
+
+        //when //then
+        assertThat(currentPool(true)).isEqualTo("replica");
+    }
+
+    @Test
+    void replicaRead_doesNotRefillSecondLevelCacheAfterWrite() {
+        //given
+        long id = ingredientService.saveIngredient(new IngredientDTO().setInci("inci").setTradeName("trade")).getId();
+        Cache cache = entityManagerFactory.getCache();
+        // запись сбросила регион; следом читает другой пользователь, без своих изменений - с реплики
+        cache.evict(Ingredient.class);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        //when
+        ingredientService.getIngredientById(id);
+
+        //then
+        // отстающая реплика вернула бы прежнюю строку, в общий кэш она не попадает
+        assertThat(cache.contains(Ingredient.class, id)).isFalse();
+
+        //when
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        ingredientService.getIngredientById(id);
+
+        //then
+        // автор изменения читает из основной базы, такое чтение наполняет кэш
+        assertThat(cache.contains(Ingredient.class, id)).isTrue();
+    }
+
+    private String currentPool(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject(CURRENT_POOL, String.class));
+    }
+}
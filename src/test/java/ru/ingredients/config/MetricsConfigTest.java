@@ -0,0 +1,54 @@
+package ru.ingredients.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @WithMockUser()
+    void prometheus_exposesDecodingPoolAndHibernateMetrics() throws Exception {
+        //given
+        mockMvc.perform(get("/decoding").param("text", "Aqua, Unknown"))
+                .andExpect(status().isOk());
+
+        //when //then
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("decoding_stage_seconds_bucket{")))
+                .andExpect(content().string(containsString("stage=\"render\"")))
+                .andExpect(content().string(containsString("decoding_tokens_total{recognized=\"false\"}")))
+                .andExpect(content().string(containsString("hikaricp_connections_pending")))
+                .andExpect(content().string(containsString("hibernate_query_executions_total")));
+    }
+
+    @Test
+    void prometheus_requiresAuthentication() throws Exception {
+        //when //then
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void health_isPublic() throws Exception {
+        //when //then
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+}
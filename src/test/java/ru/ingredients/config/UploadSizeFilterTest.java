@@ -0,0 +1,100 @@
+package ru.ingredients.config;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadSizeFilterTest {
+
+    private final UploadSizeFilter filter = new UploadSizeFilter(DataSize.ofKilobytes(1), DataSize.ofKilobytes(4), 1);
+
+    private static MockHttpServletRequest upload(String uri, int size) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContentType("multipart/form-data; boundary=x");
+        request.setContent(new byte[size]);
+        return request;
+    }
+
+    @Test
+    void rejectsLargeUploadOutsideCatalogDecoding() throws Exception {
+        //given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        //when
+        filter.doFilter(upload("/ingredients/import", 2048), response, chain);
+
+        //then
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void passesSmallUploadAndCatalogDecoding() throws Exception {
+        //given
+        MockFilterChain small = new MockFilterChain();
+        MockFilterChain catalog = new MockFilterChain();
+
+        //when
+        filter.doFilter(upload("/ingredients/import", 512), new MockHttpServletResponse(), small);
+        filter.doFilter(upload(UploadSizeFilter.CATALOG_UPLOAD_PATH, 2048), new MockHttpServletResponse(), catalog);
+
+        //then
+        assertThat(small.getRequest()).isNotNull();
+        assertThat(catalog.getRequest()).isNotNull();
+    }
+
+    @Test
+    void rejectsCatalogOverContainerLimit() throws Exception {
+        //given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        //when
+        filter.doFilter(upload(UploadSizeFilter.CATALOG_UPLOAD_PATH, 8192), response, chain);
+
+        //then
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void rejectsCatalogWhileOtherIsDecodedBeforeParsingIt() throws Exception {
+        //given
+        MockHttpServletResponse concurrent = new MockHttpServletResponse();
+        MockFilterChain concurrentChain = new MockFilterChain();
+        // пока первый каталог проходит по цепочке, приходит второй
+        FilterChain first = (request, response) -> filter.doFilter(
+                upload(UploadSizeFilter.CATALOG_UPLOAD_PATH, 2048), concurrent, concurrentChain);
+        MockFilterChain next = new MockFilterChain();
+
+        //when
+        filter.doFilter(upload(UploadSizeFilter.CATALOG_UPLOAD_PATH, 2048), new MockHttpServletResponse(), first);
+        filter.doFilter(upload(UploadSizeFilter.CATALOG_UPLOAD_PATH, 2048), new MockHttpServletResponse(), next);
+
+        //then
+        assertThat(concurrent.getStatus()).isEqualTo(429);
+        assertThat(concurrentChain.getRequest()).isNull();
+        // после ответа первому разрешение возвращается
+        assertThat(next.getRequest()).isNotNull();
+    }
+
+    @Test
+    void rejectsUploadWithoutContentLength() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ingredients/import");
+        request.setContentType("multipart/form-data; boundary=x");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        filter.doFilter(request, response, new MockFilterChain());
+
+        //then
+        assertThat(response.getStatus()).isEqualTo(411);
+    }
+}
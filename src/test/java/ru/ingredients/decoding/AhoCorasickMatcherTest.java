@@ -0,0 +1,72 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AhoCorasickMatcherTest {
+
+    private final AhoCorasickMatcher matcher = new AhoCorasickMatcher(
+            List.of("aqua", "glycerin", "titaniumdioxide", "oil", "sunfloweroil", "оксидцинка"));
+
+    @Test
+    void findAll_returnsMatchesInTextOrder() {
+        //given
+        String text = "Aqua; Glycerin\n• Titanium Dioxide";
+
+        //when
+        List<AhoCorasickMatcher.Match> result = matcher.findAll(text);
+
+        //then
+        assertThat(result).extracting(AhoCorasickMatcher.Match::normalizedName)
+                .containsExactly("aqua", "glycerin", "titaniumdioxide");
+        assertThat(result).extracting(m -> text.substring(m.start(), m.end()))
+                .containsExactly("Aqua", "Glycerin", "Titanium Dioxide");
+    }
+
+    @Test
+    void findAll_prefersLongestMatch() {
+        //when
+        List<AhoCorasickMatcher.Match> result = matcher.findAll("Sunflower Oil, Oil");
+
+        //then
+        assertThat(result).extracting(AhoCorasickMatcher.Match::normalizedName)
+                .containsExactly("sunfloweroil", "oil");
+    }
+
+    @Test
+    void findAll_skipsInformationInParentheses() {
+        //when
+        List<AhoCorasickMatcher.Match> result = matcher.findAll("Aqua (Oil) Glycerin, Оксид (ZnO) цинка");
+
+        //then
+        assertThat(result).extracting(AhoCorasickMatcher.Match::normalizedName)
+                .containsExactly("aqua", "glycerin", "оксидцинка");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Soil", "Oily", "Aquaglycerin2"})
+    void findAll_ignoresMatchesInsideWords(String text) {
+        //when
+        List<AhoCorasickMatcher.Match> result = matcher.findAll(text);
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void findAll_returnsEmptyForEmptyDictionary() {
+        //given
+        AhoCorasickMatcher empty = new AhoCorasickMatcher(List.of());
+
+        //when
+        List<AhoCorasickMatcher.Match> result = empty.findAll("Aqua, Glycerin");
+
+        //then
+        assertThat(result).isEmpty();
+    }
+}
@@ -0,0 +1,159 @@
+package ru.ingredients.decoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import ru.ingredients.category.CategoryDTO;
+import ru.ingredients.category.CategoryDirectory;
+import ru.ingredients.ingredient.IngredientDTO;
+import ru.ingredients.ingredient.IngredientService;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogCsvDecoderTest {
+
+    @Mock
+    private IngredientService ingredientService;
+
+    private CatalogCsvDecoder catalogCsvDecoder;
+
+    @BeforeEach
+    void setUp() {
+        CategoryDirectory categoryDirectory = new CategoryDirectory();
+        IngredientDictionary ingredientDictionary = new IngredientDictionary(ingredientService, null, categoryDirectory, event -> {
+        });
+        ingredientDictionary.replaceAll(List.of(
+                new IngredientDTO().setId(1L).setInci("Aqua").setTradeName("Water")
+                        .setCategories(Set.of(new CategoryDTO(1L, "Растворитель"))),
+                new IngredientDTO().setId(2L).setInci("Glycerin").setTradeName("Glycerol")
+                        .setCategories(Set.of(new CategoryDTO(2L, "Увлажнитель")))));
+        catalogCsvDecoder = new CatalogCsvDecoder(new DecodingService(ingredientDictionary,
+                new DecodingCache(ingredientDictionary, DataSize.ofMegabytes(1), new SimpleMeterRegistry()),
+                new CompositionTokenizer(",;•·"), categoryDirectory,
+                new DecodingMetrics(new SimpleMeterRegistry()), Duration.ZERO));
+    }
+
+    @Test
+    void decode_appendsResultColumnsToEachRow() throws Exception {
+        //given
+        String csv = """
+                sku,composition
+                1,"Aqua, Unknown, Glycerol"
+                2,Secret
+                """;
+        StringWriter out = new StringWriter();
+
+        //when
+        catalogCsvDecoder.decode(new StringReader(csv), out, "composition", ',');
+
+        //then
+        assertThat(out.toString().lines()).containsExactly(
+                "sku,composition,ingredient_ids,inci,categories,unrecognized",
+                "1,\"Aqua, Unknown, Glycerol\",1; 2,Aqua; Glycerin,Растворитель; Увлажнитель,Unknown",
+                "2,Secret,,,,Secret");
+    }
+
+    @Test
+    void decode_supportsDelimiterAndBom() throws Exception {
+        //given
+        String csv = "﻿composition;sku\nAqua;1\n";
+        StringWriter out = new StringWriter();
+
+        //when
+        catalogCsvDecoder.decode(new StringReader(csv), out, "composition", ';');
+
+        //then
+        assertThat(out.toString().lines()).containsExactly(
+                "composition;sku;ingredient_ids;inci;categories;unrecognized",
+                "Aqua;1;1;Aqua;Растворитель;");
+    }
+
+    @Test
+    void decode_throwsWhenColumnIsMissing() {
+        //given
+        StringWriter out = new StringWriter();
+
+        //when //then
+        assertThatThrownBy(() -> catalogCsvDecoder.decode(new StringReader("sku,text\n1,Aqua\n"), out, "composition", ','))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(out.toString()).isEmpty();
+    }
+
+    @Test
+    void decode_streamsRowsWithoutReadingWholeInput() throws Exception {
+        //given
+        int rows = 200_000;
+        CountingWriter out = new CountingWriter();
+
+        //when
+        catalogCsvDecoder.decode(new GeneratedCatalog(rows), out, "composition", ',');
+
+        //then
+        assertThat(out.lines).isEqualTo(rows + 1);
+    }
+
+    // каталог генерируется по мере чтения и целиком в памяти не существует
+    private static class GeneratedCatalog extends Reader {
+
+        private final int rows;
+        private int row = -1;
+        private String current = "";
+        private int pos;
+
+        GeneratedCatalog(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (pos == current.length()) {
+                if (row == rows) return -1;
+                current = row == -1 ? "sku,composition\n" : row + ",\"Aqua, Glycerin, Unknown " + row % 100 + "\"\n";
+                row++;
+                pos = 0;
+            }
+            int n = Math.min(len, current.length() - pos);
+            current.getChars(pos, pos + n, buf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class CountingWriter extends Writer {
+
+        private long lines;
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (buf[i] == '\n') lines++;
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
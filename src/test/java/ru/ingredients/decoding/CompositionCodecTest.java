@@ -0,0 +1,50 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompositionCodecTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "Aqua", "Aqua, Glycerin, Parfum (Fragrance)", "Вода, глицерин\n• Отдушка"})
+    void decode_restoresEncodedText(String text) {
+        //when
+        String encoded = CompositionCodec.encode(text);
+
+        //then
+        assertThat(encoded).matches("[A-Za-z0-9_-]*");
+        assertThat(CompositionCodec.decode(encoded)).isEqualTo(text);
+    }
+
+    @Test
+    void encode_compressesRepetitiveComposition() {
+        //given
+        String text = "Aqua, Glycerin, ".repeat(50);
+
+        //when
+        String encoded = CompositionCodec.encode(text);
+
+        //then
+        assertThat(encoded.length()).isLessThan(text.length() / 5);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"not-deflate", "%%%"})
+    void decode_throwsForBrokenInput(String encoded) {
+        //when //then
+        assertThatThrownBy(() -> CompositionCodec.decode(encoded)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void decode_throwsForTooLongText() {
+        //given
+        String encoded = CompositionCodec.encode("a".repeat(CompositionCodec.MAX_TEXT_BYTES + 1));
+
+        //when //then
+        assertThatThrownBy(() -> CompositionCodec.decode(encoded)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompositionTokenizerTest {
+
+    private final CompositionTokenizer tokenizer = new CompositionTokenizer(",;•·");
+
+    private List<String> tokenize(String text) {
+        CompositionTokenizer.Tokens tokens = tokenizer.tokenize(text);
+        return IntStream.range(0, tokens.size()).mapToObj(tokens::get).toList();
+    }
+
+    @Test
+    void tokenize_splitsByAllDelimiters() {
+        //when
+        List<String> result = tokenize("Aqua,Glycerin; Parfum\n• Limonene · Linalool\r\nCitral");
+
+        //then
+        assertThat(result).containsExactly("Aqua", "Glycerin", "Parfum", "Limonene", "Linalool", "Citral");
+    }
+
+    @Test
+    void tokenize_keepsDelimitersInsideParentheses() {
+        //when
+        List<String> result = tokenize("Aqua (Water, Eau), Parfum (Fragrance (A; B)), Glycerin");
+
+        //then
+        assertThat(result).containsExactly("Aqua (Water, Eau)", "Parfum (Fragrance (A; B))", "Glycerin");
+    }
+
+    @Test
+    void tokenize_treatsUnclosedParenthesisAsRegularChar() {
+        //when
+        List<String> result = tokenize("Aqua (Water, Glycerin (99%), Parfum\nCitral)");
+
+        //then
+        assertThat(result).containsExactly("Aqua (Water", "Glycerin (99%)", "Parfum", "Citral)");
+    }
+
+    @Test
+    void tokenize_keepsCommaBetweenDigits() {
+        //when
+        List<String> result = tokenize("1,2-Hexanediol, Salicylic Acid 0,5%,2-Phenoxyethanol");
+
+        //then
+        assertThat(result).containsExactly("1,2-Hexanediol", "Salicylic Acid 0,5%", "2-Phenoxyethanol");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Ingredients: Aqua, Glycerin", "INGREDIENTS : Aqua, Glycerin", "Состав:\nAqua,\nGlycerin"})
+    void tokenize_stripsIngredientsPrefix(String text) {
+        //when
+        List<String> result = tokenize(text);
+
+        //then
+        assertThat(result).containsExactly("Aqua", "Glycerin");
+    }
+
+    @Test
+    void tokenize_stripsPrefixOnlyAtLineStart() {
+        //when
+        List<String> result = tokenize("Aqua, INCI: Glycerin");
+
+        //then
+        assertThat(result).containsExactly("Aqua", "INCI: Glycerin");
+    }
+
+    @Test
+    void tokenize_returnsBoundsInSourceText() {
+        //given
+        String text = "  Aqua ,, Glycerin  ";
+
+        //when
+        CompositionTokenizer.Tokens tokens = tokenizer.tokenize(text);
+
+        //then
+        assertThat(tokens.size()).isEqualTo(2);
+        assertThat(tokens.start(0)).isEqualTo(2);
+        assertThat(tokens.end(0)).isEqualTo(6);
+        assertThat(tokens.start(1)).isEqualTo(10);
+        assertThat(tokens.end(1)).isEqualTo(18);
+        assertThat(tokens.text()).isSameAs(text);
+    }
+
+    @Test
+    void tokenize_respectsRange() {
+        //when
+        CompositionTokenizer.Tokens tokens = tokenizer.tokenize("Aqua, Glycerin (x), Parfum", 6, 19);
+
+        //then
+        assertThat(tokens.size()).isEqualTo(1);
+        assertThat(tokens.get(0)).isEqualTo("Glycerin (x)");
+    }
+
+    @Test
+    void tokenize_usesConfiguredDelimiters() {
+        //given
+        CompositionTokenizer pipes = new CompositionTokenizer("|");
+
+        //when
+        CompositionTokenizer.Tokens tokens = pipes.tokenize("Aqua, Water | Glycerin");
+
+        //then
+        assertThat(tokens.size()).isEqualTo(2);
+        assertThat(tokens.get(0)).isEqualTo("Aqua, Water");
+    }
+}
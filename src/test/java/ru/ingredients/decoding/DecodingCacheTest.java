@@ -0,0 +1,116 @@
+package ru.ingredients.decoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import ru.ingredients.category.CategoryDirectory;
+import ru.ingredients.ingredient.IngredientDTO;
+import ru.ingredients.ingredient.IngredientDeletedEvent;
+import ru.ingredients.ingredient.IngredientSavedEvent;
+import ru.ingredients.ingredient.IngredientService;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class DecodingCacheTest {
+
+    @Mock
+    private IngredientService ingredientService;
+
+    private IngredientDictionary ingredientDictionary;
+
+    private DecodingCache decodingCache;
+
+    private IngredientDTO aqua;
+    private IngredientDTO glycerin;
+
+    @BeforeEach
+    void setUp() {
+        ingredientDictionary = new IngredientDictionary(ingredientService, null, new CategoryDirectory(),
+                event -> decodingCache.onDictionaryChanged((IngredientDictionaryChangedEvent) event));
+        decodingCache = new DecodingCache(ingredientDictionary, DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+
+        aqua = new IngredientDTO().setId(1L).setInci("Aqua").setTradeName("Water");
+        glycerin = new IngredientDTO().setId(2L).setInci("Glycerin").setTradeName("Glycerol");
+        ingredientDictionary.replaceAll(List.of(aqua, glycerin));
+    }
+
+    @Test
+    void resolve_returnsIngredientsInOrderAndNullForUnknown() {
+        //when
+        IngredientDTO[] result = decodingCache.resolve(List.of("glycerin", "unknown", "aqua"));
+
+        //then
+        assertThat(result).containsExactly(glycerin, null, aqua);
+    }
+
+    @Test
+    void resolve_hitsCacheForSameNormalizedNames() {
+        //given
+        IngredientDTO[] first = decodingCache.resolve(List.of("aqua", "glycerin"));
+
+        //when
+        IngredientDTO[] second = decodingCache.resolve(List.of("aqua", "glycerin"));
+
+        //then
+        assertThat(second).isSameAs(first);
+        assertThat(decodingCache.stats().hitCount()).isEqualTo(1);
+        assertThat(decodingCache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void onDictionaryChanged_invalidatesOnlyEntriesWithChangedNames() {
+        //given
+        decodingCache.resolve(List.of("aqua", "newname"));
+        IngredientDTO[] untouched = decodingCache.resolve(List.of("glycerin"));
+
+        //when
+        ingredientDictionary.onSaved(new IngredientSavedEvent(
+                new IngredientDTO().setId(3L).setInci("New name").setTradeName("New name")));
+
+        //then
+        assertThat(decodingCache.size()).isEqualTo(1);
+        assertThat(decodingCache.resolve(List.of("glycerin"))).isSameAs(untouched);
+        assertThat(decodingCache.resolve(List.of("aqua", "newname"))[1].getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void onDictionaryChanged_invalidatesOldNamesOfDeletedIngredient() {
+        //given
+        decodingCache.resolve(List.of("water"));
+
+        //when
+        ingredientDictionary.onDeleted(new IngredientDeletedEvent(aqua.getId()));
+
+        //then
+        assertThat(decodingCache.resolve(List.of("water"))).containsExactly((IngredientDTO) null);
+        assertThat(decodingCache.stats().hitCount()).isZero();
+    }
+
+    @Test
+    void resolve_doesNotKeepCompositionHeavierThanWholeCache() {
+        //given
+        DecodingCache small = new DecodingCache(ingredientDictionary, DataSize.ofKilobytes(1), new SimpleMeterRegistry());
+        List<String> longComposition = Collections.nCopies(100, "unknown ingredient name");
+        assertThat(DecodingCache.weigh(longComposition)).isGreaterThan(1024);
+
+        //when
+        IngredientDTO[] result = small.resolve(longComposition);
+        small.resolve(List.of("aqua"));
+
+        //then
+        // длинный состав расшифрован, но в кэше остается только короткий
+        assertThat(result).hasSize(100).containsOnlyNulls();
+        assertThat(small.size()).isEqualTo(1);
+        assertThat(small.stats().evictionCount()).isEqualTo(1);
+        assertThat(small.resolve(List.of("aqua"))).containsExactly(aqua);
+        assertThat(small.stats().hitCount()).isEqualTo(1);
+    }
+}
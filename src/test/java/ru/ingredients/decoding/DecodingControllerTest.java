@@ -8,6 +8,7 @@ import org.springframework.context.annotation.FilterType;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.ingredients.category.StringToCategoryDTOConverter;
 import ru.ingredients.config.WebSecurityConfig;
 import ru.ingredients.ingredient.IngredientDTO;
@@ -15,8 +16,8 @@ import ru.ingredients.ingredient.IngredientDTO;
 import java.util.List;
 import java.util.Map;
 
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -40,12 +41,20 @@ class DecodingControllerTest {
     void postDecodingText() throws Exception {
         //given
         String text = "Ingredient";
+        List<IngredientDTO> allIngredients = List.of(new IngredientDTO().setTradeName(text));
+        when(decodingService.decode(text)).thenReturn(allIngredients);
 
         //when //then
-        mockMvc.perform(post("/decoding")
+        MvcResult result = mockMvc.perform(post("/decoding")
                         .param("text", text))
-                .andExpect(status().is3xxRedirection())
-                .andExpect(redirectedUrl("/decoding"));
+                .andExpect(status().isOk())
+                .andExpect(view().name("decoding/decoding"))
+                .andExpect(model().attribute("text", text))
+                .andExpect(model().attribute("allIngredients", allIngredients))
+                .andExpect(model().attribute("link", "/decoding?z=" + CompositionCodec.encode(text)))
+                .andReturn();
+
+        assertThat(result.getRequest().getSession(false)).isNull();
     }
 
     @Test
@@ -57,21 +66,96 @@ class DecodingControllerTest {
         List<IngredientDTO> allIngredients = List.of(ing1, ing2);
         List<IngredientDTO> foundIngredients = List.of(ing1);
         Map<String, List<IngredientDTO>> ingByCat = Map.of("Category", foundIngredients);
+        Map<String, List<IngredientDTO>> suggestions = Map.of("unknown", List.of(ing1));
 
         when(decodingService.decode(text)).thenReturn(allIngredients);
         when(decodingService.groupByCat(foundIngredients)).thenReturn(ingByCat);
+        when(decodingService.suggest(allIngredients)).thenReturn(suggestions);
 
         //when //then
         mockMvc.perform(get("/decoding")
-                        .flashAttr("text", text))
+                        .param("text", text))
                 .andExpect(status().isOk())
                 .andExpect(view().name("decoding/decoding"))
+                .andExpect(header().string("Cache-Control", "max-age=300, public"))
                 .andExpect(model().attribute("text", text))
                 .andExpect(model().attribute("ingByCat", ingByCat))
                 .andExpect(model().attribute("allIngredients", allIngredients))
-                .andExpect(model().attribute("foundIngredients", foundIngredients));
+                .andExpect(model().attribute("foundIngredients", foundIngredients))
+                .andExpect(model().attribute("suggestions", suggestions));
 
         verify(decodingService).decode(text);
         verify(decodingService).groupByCat(foundIngredients);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getDecoding_compressedText() throws Exception {
+        //given
+        String text = "Aqua, Glycerin, Parfum (Fragrance)";
+
+        //when //then
+        mockMvc.perform(get("/decoding")
+                        .param("z", CompositionCodec.encode(text)))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("text", text));
+
+        verify(decodingService).decode(text);
+    }
+
+    @Test
+    void getDecoding_rejectsBrokenCompressedText() throws Exception {
+        //when //then
+        mockMvc.perform(get("/decoding")
+                        .param("z", "not-deflate"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(decodingService);
+    }
+
+    @Test
+    void getDecoding_withoutText() throws Exception {
+        //when //then
+        mockMvc.perform(get("/decoding"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("text", ""))
+                .andExpect(model().attributeDoesNotExist("link"));
+    }
+
+    @Test
+    void postDecodingText_keepsFreeTextMode() throws Exception {
+        //given
+        String text = "Ingredient";
+
+        //when //then
+        mockMvc.perform(post("/decoding")
+                        .param("text", text)
+                        .param("freeText", "true"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("freeText", true))
+                .andExpect(model().attribute("link", "/decoding?z=" + CompositionCodec.encode(text) + "&freeText=true"));
+
+        verify(decodingService).decodeFreeText(text);
+    }
+
+    @Test
+    void getDecoding_freeText() throws Exception {
+        //given
+        String text = "ingredient; unknown";
+        IngredientDTO ing1 = new IngredientDTO().setInci("ingredient").setTradeName("trade name");
+        IngredientDTO ing2 = new IngredientDTO().setTradeName("unknown");
+        List<IngredientDTO> allIngredients = List.of(ing1, ing2);
+
+        when(decodingService.decodeFreeText(text)).thenReturn(allIngredients);
+
+        //when //then
+        mockMvc.perform(get("/decoding")
+                        .param("text", text)
+                        .param("freeText", "true"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("freeText", true))
+                .andExpect(model().attribute("allIngredients", allIngredients));
+
+        verify(decodingService).decodeFreeText(text);
+        verify(decodingService, never()).decode(text);
+    }
+}
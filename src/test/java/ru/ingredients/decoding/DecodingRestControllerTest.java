@@ -0,0 +1,226 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.ingredients.category.StringToCategoryDTOConverter;
+import ru.ingredients.config.WebSecurityConfig;
+import ru.ingredients.ingredient.IngredientDTO;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = DecodingRestController.class,
+        properties = {"decoding.batch.max-compositions=3", "decoding.batch.max-chars=100"},
+        excludeFilters = @ComponentScan.Filter(
+                type = FilterType.ASSIGNABLE_TYPE,
+                value = StringToCategoryDTOConverter.class
+        )
+)
+@Import(WebSecurityConfig.class)
+class DecodingRestControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private DecodingService decodingService;
+
+    @MockitoBean
+    private CatalogCsvDecoder catalogCsvDecoder;
+
+    @Test
+    void autocomplete_returnsNamesAsJson() throws Exception {
+        //given
+        when(decodingService.autocomplete("glyc", 5)).thenReturn(List.of("Glycerin", "Glycol"));
+
+        //when //then
+        mockMvc.perform(get("/api/decoding/autocomplete").param("q", "glyc").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("[\"Glycerin\", \"Glycol\"]"));
+    }
+
+    @Test
+    void decodeBatch_streamsOneLinePerComposition() throws Exception {
+        //given
+        IngredientDTO ing = new IngredientDTO().setId(1L).setInci("Aqua").setTradeName("Water");
+        IngredientDTO unknown = new IngredientDTO().setTradeName("Unknown");
+        List<String> compositions = List.of("Aqua, Unknown", "Water");
+        when(decodingService.decodeBatch(compositions)).thenReturn(Stream.of(List.of(ing, unknown), List.of(ing)));
+
+        //when
+        MvcResult started = mockMvc.perform(post("/api/decoding/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"Aqua, Unknown\", \"Water\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        List<String> lines = body.lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith("{\"index\":0,").contains("\"inci\":\"Aqua\"", "\"tradeName\":\"Unknown\"");
+        assertThat(lines.get(1)).startsWith("{\"index\":1,").contains("\"tradeName\":\"Water\"");
+        verify(decodingService).decodeBatch(compositions);
+    }
+
+    @Test
+    void countBatchByCategory_streamsCountsPerComposition() throws Exception {
+        //given
+        List<IngredientDTO> decoded = List.of(new IngredientDTO().setId(1L));
+        when(decodingService.decodeBatch(List.of("Aqua"))).thenReturn(Stream.of(decoded));
+        when(decodingService.countByCat(decoded)).thenReturn(Map.of("Растворитель", 1));
+
+        //when
+        MvcResult started = mockMvc.perform(post("/api/decoding/batch/category-counts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"Aqua\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(body).isEqualTo("{\"index\":0,\"counts\":{\"Растворитель\":1}}\n");
+    }
+
+    @Test
+    void decodeBatch_rejectsBatchOverLimits() throws Exception {
+        //when //then
+        mockMvc.perform(post("/api/decoding/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"Aqua\", \"Water\", \"Glycerin\", \"Panthenol\"]"))
+                .andExpect(status().isPayloadTooLarge());
+        mockMvc.perform(post("/api/decoding/batch/category-counts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"" + "Aqua, ".repeat(20) + "\"]"))
+                .andExpect(status().isPayloadTooLarge());
+
+        verifyNoInteractions(decodingService);
+    }
+
+    @Test
+    void decodeBatch_rejectsMalformedBody() throws Exception {
+        //when //then
+        mockMvc.perform(post("/api/decoding/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\": \"Aqua\"}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(decodingService);
+    }
+
+    @Nested
+    @TestPropertySource(properties = "decoding.batch.chunk-size=2")
+    class InChunks {
+
+        // поля внешнего класса заполняются из его контекста, у этого класса контекст свой
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private DecodingService decodingService;
+
+        @Test
+        void decodeBatch_decodesAndWritesChunkByChunk() throws Exception {
+            //given
+            IngredientDTO aqua = new IngredientDTO().setId(1L).setInci("Aqua");
+            IngredientDTO glycerin = new IngredientDTO().setId(2L).setInci("Glycerin");
+            when(decodingService.decodeBatch(List.of("Aqua", "Water")))
+                    .thenReturn(Stream.of(List.of(aqua), List.of(aqua)));
+            when(decodingService.decodeBatch(List.of("Glycerin"))).thenReturn(Stream.of(List.of(glycerin)));
+
+            //when
+            MvcResult started = mockMvc.perform(post("/api/decoding/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[\"Aqua\", \"Water\", \"Glycerin\"]"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            //then
+            // вторая порция читается и расшифровывается после записи первой, номера строк сквозные
+            String body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertThat(body.lines()).hasSize(3);
+            assertThat(body.lines().toList().get(2)).startsWith("{\"index\":2,").contains("\"inci\":\"Glycerin\"");
+            InOrder inOrder = inOrder(decodingService);
+            inOrder.verify(decodingService).decodeBatch(List.of("Aqua", "Water"));
+            inOrder.verify(decodingService).decodeBatch(List.of("Glycerin"));
+        }
+
+        @Test
+        void decodeBatch_rejectsFirstChunkOverLimitBeforeStreaming() throws Exception {
+            //when //then
+            mockMvc.perform(post("/api/decoding/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[\"Aqua\", \"" + "Water, ".repeat(20) + "\"]"))
+                    .andExpect(status().isPayloadTooLarge());
+
+            verifyNoInteractions(decodingService);
+        }
+    }
+
+    @Test
+    void decodeCatalog_returnsCsvAttachment() throws Exception {
+        //given
+        MockMultipartFile file = new MockMultipartFile("file", "catalog.csv", "text/csv", "sku,text\n1,Aqua\n".getBytes());
+        doAnswer(invocation -> {
+            invocation.getArgument(1, Writer.class).write("decoded");
+            return null;
+        }).when(catalogCsvDecoder).decode(any(Reader.class), any(Writer.class), eq("text"), eq(';'));
+
+        //when //then
+        mockMvc.perform(multipart("/api/decoding/csv")
+                        .file(file)
+                        .param("column", "text")
+                        .param("delimiter", ";"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"decoded-catalog.csv\""))
+                .andExpect(content().string("decoded"));
+    }
+
+    @Test
+    void decodeCatalog_returnsBadRequestForMissingColumn() throws Exception {
+        //given
+        MockMultipartFile file = new MockMultipartFile("file", "catalog.csv", "text/csv", "sku\n1\n".getBytes());
+        doThrow(new IllegalArgumentException("В файле нет колонки composition"))
+                .when(catalogCsvDecoder).decode(any(Reader.class), any(Writer.class), eq("composition"), eq(','));
+
+        //when //then
+        mockMvc.perform(multipart("/api/decoding/csv")
+                        .file(file))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,5 +1,6 @@
 package ru.ingredients.decoding;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,17 +11,19 @@ import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 import ru.ingredients.category.CategoryDTO;
+import ru.ingredients.category.CategoryDirectory;
 import ru.ingredients.ingredient.IngredientDTO;
 import ru.ingredients.ingredient.IngredientService;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +32,14 @@ class DecodingServiceTest {
     @Mock
     private IngredientService ingredientService;
 
+    private IngredientDictionary ingredientDictionary;
+
+    private DecodingCache decodingCache;
+
+    private CategoryDirectory categoryDirectory;
+
+    private SimpleMeterRegistry meterRegistry;
+
     private DecodingService decodingService;
 
     private IngredientDTO ing1;
@@ -36,39 +47,42 @@ class DecodingServiceTest {
 
     @BeforeEach
     void setUp() {
-        decodingService = new DecodingService(ingredientService);
+        categoryDirectory = new CategoryDirectory();
+        ingredientDictionary = new IngredientDictionary(ingredientService, null, categoryDirectory,
+                event -> decodingCache.onDictionaryChanged((IngredientDictionaryChangedEvent) event));
+        decodingCache = new DecodingCache(ingredientDictionary, DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+        meterRegistry = new SimpleMeterRegistry();
+        decodingService = new DecodingService(ingredientDictionary, decodingCache,
+                new CompositionTokenizer(",;•·"), categoryDirectory, new DecodingMetrics(meterRegistry), Duration.ofSeconds(1));
 
-        ing1 = new IngredientDTO().setInci("Name (with parentheses)").setOtherNames(Set.of("Other name"));
-        ing2 = new IngredientDTO().setInci("Name-123").setTradeName("Trade name");
+        ing1 = new IngredientDTO().setId(1L).setInci("Name (with parentheses)").setOtherNames(Set.of("Other name"));
+        ing2 = new IngredientDTO().setId(2L).setInci("Name-123").setTradeName("Trade name");
     }
 
     @Test
     void decode_searchForAllNames() {
         //given
-        IngredientDTO ing3 = new IngredientDTO().setInci("INCI name");
-
-        when(ingredientService.getIngredientsByAllNames(anyList())).thenReturn(List.of(ing1, ing2, ing3));
+        IngredientDTO ing3 = new IngredientDTO().setId(3L).setInci("INCI name");
+        ingredientDictionary.replaceAll(List.of(ing1, ing2, ing3));
 
         //when
         List<IngredientDTO> result = decodingService.decode("Other name, Trade name, INCI name");
 
         //then
         assertThat(result).containsExactlyInAnyOrderElementsOf(List.of(ing1, ing2, ing3));
-        verify(ingredientService).getIngredientsByAllNames(anyList());
     }
 
     @Test
     void decode_returnsIngInCorrectOrder() {
         //given
-        IngredientDTO ing3 = new IngredientDTO().setInci("INCI name");
-        when(ingredientService.getIngredientsByAllNames(anyList())).thenReturn(List.of(ing1, ing2, ing3));
+        IngredientDTO ing3 = new IngredientDTO().setId(3L).setInci("INCI name");
+        ingredientDictionary.replaceAll(List.of(ing1, ing2, ing3));
 
         //when
         List<IngredientDTO> result = decodingService.decode("INCI name, Trade name, Other name");
 
         //then
         assertThat(result).containsExactlyElementsOf(List.of(ing3, ing2, ing1));
-        verify(ingredientService).getIngredientsByAllNames(anyList());
     }
 
     @Test
@@ -76,14 +90,70 @@ class DecodingServiceTest {
         //given
         String unknown = "Unknown";
         IngredientDTO dto = new IngredientDTO().setTradeName(unknown);
-        when(ingredientService.getIngredientsByAllNames(anyList())).thenReturn(List.of());
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
 
         //when
         List<IngredientDTO> result = decodingService.decode(unknown);
 
         //then
         assertThat(result).containsExactlyInAnyOrderElementsOf(List.of(dto));
-        verify(ingredientService).getIngredientsByAllNames(anyList());
+    }
+
+    @Test
+    void decode_doesNotQueryDatabase() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+
+        //when
+        List<IngredientDTO> result = decodingService.decode("Name, Name-123");
+
+        //then
+        assertThat(result).containsExactly(ing1, ing2);
+        verifyNoInteractions(ingredientService);
+    }
+
+    @Test
+    void decode_splitsByTokenizerRules() {
+        //given
+        IngredientDTO ing3 = new IngredientDTO().setId(3L).setInci("1,2-Hexanediol");
+        ingredientDictionary.replaceAll(List.of(ing1, ing2, ing3));
+
+        //when
+        List<IngredientDTO> result = decodingService.decode("Состав: Name (with, parentheses);1,2-Hexanediol\nTrade name");
+
+        //then
+        assertThat(result).containsExactly(ing1, ing3, ing2);
+    }
+
+    @Test
+    void decode_reusesCachedResultForCaseAndSpacingVariants() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+        decodingService.decode("Trade name, Unknown one");
+
+        //when
+        List<IngredientDTO> result = decodingService.decode("TRADE  NAME, unknown-one");
+
+        //then
+        assertThat(result).containsExactly(ing2, new IngredientDTO().setTradeName("unknown-one"));
+        assertThat(decodingCache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void decode_recordsStageTimesAndRecognizedTokens() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+
+        //when
+        decodingService.decode("Trade name, Unknown, Name-123");
+
+        //then
+        for (String stage : List.of("tokenize", "normalize", "lookup", "map")) {
+            assertThat(meterRegistry.get("decoding.stage").tag("stage", stage).timer().count()).isEqualTo(1);
+        }
+        assertThat(meterRegistry.get("decoding.composition.tokens").summary().totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("decoding.tokens").tag("recognized", "true").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("decoding.tokens").tag("recognized", "false").counter().count()).isEqualTo(1);
     }
 
     @ParameterizedTest
@@ -98,11 +168,124 @@ class DecodingServiceTest {
         verifyNoInteractions(ingredientService);
     }
 
+    @Test
+    void decodeBatch_keepsDecodeSemanticsForEachComposition() {
+        //given
+        IngredientDTO ing3 = new IngredientDTO().setId(3L).setInci("INCI name");
+        ingredientDictionary.replaceAll(List.of(ing1, ing2, ing3));
+        List<String> texts = List.of("INCI name, Unknown, Other name", "Trade name, INCI name");
+
+        //when
+        List<List<IngredientDTO>> result = decodingService.decodeBatch(texts).toList();
+
+        //then
+        assertThat(result).containsExactly(
+                List.of(ing3, new IngredientDTO().setTradeName("Unknown"), ing1),
+                List.of(ing2, ing3));
+        assertThat(result).containsExactlyElementsOf(texts.stream().map(decodingService::decode).toList());
+    }
+
+    @Test
+    void decodeBatch_returnsEmptyListForBlankComposition() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+
+        //when
+        List<List<IngredientDTO>> result = decodingService.decodeBatch(List.of("", "Name")).toList();
+
+        //then
+        assertThat(result).containsExactly(List.of(), List.of(ing1));
+    }
+
+    @Test
+    void decodeFreeText_ignoresSeparators() {
+        //given
+        IngredientDTO ing3 = new IngredientDTO().setId(3L).setInci("INCI name");
+        ingredientDictionary.replaceAll(List.of(ing1, ing2, ing3));
+
+        //when
+        List<IngredientDTO> result = decodingService.decodeFreeText("Ingredients: INCI name;Trade name\n• Other name.");
+
+        //then
+        assertThat(result).containsExactly(ing3, ing2, ing1);
+    }
+
+    @Test
+    void decodeFreeText_returnsUnrecognizedPartsBetweenMatches() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+
+        //when
+        List<IngredientDTO> result = decodingService.decodeFreeText("Unknown 1; Trade name, Unknown 2\nUnknown 3");
+
+        //then
+        assertThat(result).containsExactly(
+                new IngredientDTO().setTradeName("Unknown 1"),
+                ing2,
+                new IngredientDTO().setTradeName("Unknown 2"),
+                new IngredientDTO().setTradeName("Unknown 3"));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"  "})
+    void decodeFreeText_returnsEmptyForNullOrBlank(String source) {
+        //given //when
+        List<IngredientDTO> result = decodingService.decodeFreeText(source);
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void suggest_returnsSimilarIngredientsForUnrecognizedNames() {
+        //given
+        IngredientDTO ing3 = new IngredientDTO().setId(3L).setInci("Glycerin").setTradeName("Glycerine");
+        ingredientDictionary.replaceAll(List.of(ing1, ing2, ing3));
+        List<IngredientDTO> decoded = decodingService.decode("Glicerin, Trade name, Unknown");
+
+        //when
+        Map<String, List<IngredientDTO>> result = decodingService.suggest(decoded);
+
+        //then
+        assertThat(result).containsOnlyKeys("Glicerin");
+        assertThat(result.get("Glicerin")).containsExactly(ing3);
+    }
+
+    @Test
+    void suggest_returnsEmptyWhenTimeBudgetIsExhausted() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+        DecodingService noTime = new DecodingService(ingredientDictionary, decodingCache,
+                new CompositionTokenizer(",;•·"), categoryDirectory, new DecodingMetrics(meterRegistry), Duration.ZERO);
+
+        //when
+        Map<String, List<IngredientDTO>> result = noTime.suggest(noTime.decode("Trade nane"));
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void autocomplete_returnsNamesStartingWithNormalizedPrefix() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+
+        //when
+        List<String> result = decodingService.autocomplete("NAME-", 10);
+
+        //then
+        assertThat(result).containsExactly("Name (with parentheses)", "Name-123");
+        assertThat(decodingService.autocomplete("name", 1)).containsExactly("Name (with parentheses)");
+        assertThat(decodingService.autocomplete("name", -1)).isEmpty();
+    }
+
     @Test
     void groupByCat() {
         //given
         CategoryDTO cat1 = new CategoryDTO(1L, "Category 1");
         CategoryDTO cat2 = new CategoryDTO(2L, "Category 2");
+        categoryDirectory.registerAll(List.of(cat1, cat2));
         ing1.setCategories(Set.of(cat1, cat2));
         ing2.setCategories(Set.of(cat1));
 
@@ -115,6 +298,44 @@ class DecodingServiceTest {
         assertThat(result.get(cat2.getName())).containsExactlyInAnyOrderElementsOf(List.of(ing1));
     }
 
+    @Test
+    void groupByCat_ordersGroupsByCategoryName() {
+        //given
+        CategoryDTO b = new CategoryDTO(1L, "B");
+        CategoryDTO a = new CategoryDTO(2L, "A");
+        CategoryDTO c = new CategoryDTO(3L, "C");
+        categoryDirectory.registerAll(List.of(b, a, c));
+        ing1.setCategories(Set.of(b, c));
+        ing2.setCategories(Set.of(a, b));
+        ingredientDictionary.replaceAll(List.of(ing1, ing2));
+        List<IngredientDTO> decoded = decodingService.decode("Trade name, Other name");
+
+        //when
+        Map<String, List<IngredientDTO>> result = decodingService.groupByCat(decoded);
+
+        //then
+        assertThat(result.keySet()).containsExactly("A", "B", "C");
+        assertThat(result.get("B")).containsExactly(decoded.get(0), decoded.get(1));
+        assertThat(result.get("C")).containsExactly(decoded.get(1));
+    }
+
+    @Test
+    void countByCat() {
+        //given
+        CategoryDTO cat1 = new CategoryDTO(1L, "Category 1");
+        CategoryDTO cat2 = new CategoryDTO(2L, "Category 2");
+        categoryDirectory.registerAll(List.of(cat1, cat2));
+        ing1.setCategories(Set.of(cat1, cat2));
+        ing2.setCategories(Set.of(cat1));
+        IngredientDTO unknown = new IngredientDTO().setTradeName("Unknown");
+
+        //when
+        Map<String, Integer> result = decodingService.countByCat(List.of(ing1, unknown, ing2));
+
+        //then
+        assertThat(result).containsExactly(Map.entry("Category 1", 2), Map.entry("Category 2", 1));
+    }
+
     @ParameterizedTest
     @MethodSource("provideIngredientsForEmptyResult")
     void groupByCat_ReturnsEmpty(List<IngredientDTO> source) {
@@ -0,0 +1,263 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.ingredients.category.CategoryDTO;
+import ru.ingredients.category.CategoryDirectory;
+import ru.ingredients.category.CategoryService;
+import ru.ingredients.ingredient.IngredientDTO;
+import ru.ingredients.ingredient.IngredientDeletedEvent;
+import ru.ingredients.ingredient.IngredientSavedEvent;
+import ru.ingredients.ingredient.IngredientService;
+import ru.ingredients.ingredient.IngredientsImportedEvent;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngredientDictionaryTest {
+
+    @Mock
+    private IngredientService ingredientService;
+
+    @Mock
+    private CategoryService categoryService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private IngredientDictionary ingredientDictionary;
+
+    private IngredientDTO ing;
+
+    @BeforeEach
+    void setUp() {
+        ingredientDictionary = new IngredientDictionary(ingredientService, categoryService, new CategoryDirectory(),
+                eventPublisher);
+
+        ing = new IngredientDTO()
+                .setId(1L)
+                .setInci("INCI Name (with parentheses)")
+                .setTradeName("Trade-Name")
+                .setDescription("Description")
+                .setOtherNames(Set.of("Other name"))
+                .setCategories(Set.of(new CategoryDTO(1L, "Category")));
+    }
+
+    @Test
+    void load() {
+        //given
+        when(ingredientService.getAllIngredientsWithNames()).thenReturn(List.of(ing));
+
+        //when
+        ingredientDictionary.load();
+
+        //then
+        assertThat(ingredientDictionary.snapshot().findByNormalizedName("inciname")).isNotNull();
+        verify(categoryService).getAllCategories();
+        verify(ingredientService).getAllIngredientsWithNames();
+    }
+
+    @Test
+    void snapshot_findsByAllNormalizedNames() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing));
+
+        //when
+        IngredientDictionary.Snapshot snapshot = ingredientDictionary.snapshot();
+
+        //then
+        assertThat(snapshot.findByNormalizedName("inciname").getId()).isEqualTo(ing.getId());
+        assertThat(snapshot.findByNormalizedName("tradename").getId()).isEqualTo(ing.getId());
+        assertThat(snapshot.findByNormalizedName("othername").getId()).isEqualTo(ing.getId());
+        assertThat(snapshot.findByNormalizedName("unknown")).isNull();
+    }
+
+    @Test
+    void snapshot_storesCopyWithoutDescription() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing));
+
+        //when
+        ing.setTradeName("Changed");
+        IngredientDTO result = ingredientDictionary.snapshot().findById(ing.getId());
+
+        //then
+        assertThat(result.getTradeName()).isEqualTo("Trade-Name");
+        assertThat(result.getDescription()).isNull();
+        assertThat(result.getCategories()).isEqualTo(ing.getCategories());
+    }
+
+    @Test
+    void onSaved_replacesNamesOfExistingIngredient() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing));
+        IngredientDictionary.Snapshot before = ingredientDictionary.snapshot();
+        IngredientDTO changed = new IngredientDTO().setId(ing.getId()).setInci("New INCI").setTradeName("Trade-Name");
+
+        //when
+        ingredientDictionary.onSaved(new IngredientSavedEvent(changed));
+
+        //then
+        IngredientDictionary.Snapshot after = ingredientDictionary.snapshot();
+        assertThat(after.version()).isGreaterThan(before.version());
+        assertThat(after.findByNormalizedName("newinci")).isEqualTo(changed);
+        assertThat(after.findByNormalizedName("inciname")).isNull();
+        assertThat(after.findByNormalizedName("othername")).isNull();
+        // ранее выданный снимок не меняется
+        assertThat(before.findByNormalizedName("inciname")).isNotNull();
+        verify(eventPublisher).publishEvent(new IngredientDictionaryChangedEvent(
+                after.version(), Set.of("newinci", "tradename", "inciname", "othername")));
+    }
+
+    @Test
+    void onSaved_keepsEntriesOfUnchangedIngredients() {
+        //given
+        IngredientDTO aqua = new IngredientDTO().setId(2L).setInci("Aqua").setTradeName("Water");
+        ingredientDictionary.replaceAll(List.of(ing, aqua));
+        IngredientDictionary.Snapshot before = ingredientDictionary.snapshot();
+        IngredientDTO unchanged = before.findByNormalizedName("inciname");
+
+        //when
+        ingredientDictionary.onSaved(new IngredientSavedEvent(aqua.setTradeName("Purified water")));
+
+        //then
+        IngredientDictionary.Snapshot after = ingredientDictionary.snapshot();
+        // неизмененный ингредиент переходит в новый снимок тем же объектом, маска категорий не пересчитывается
+        assertThat(after.findByNormalizedName("inciname")).isSameAs(unchanged);
+        assertThat(after.categoryBits(unchanged)).isSameAs(before.categoryBits(unchanged));
+        assertThat(after.findByNormalizedName("purifiedwater").getId()).isEqualTo(2L);
+        assertThat(after.findByNormalizedName("water")).isNull();
+        assertThat(after.size()).isEqualTo(2);
+    }
+
+    @Test
+    void onImported_replacesNameMovedBetweenIngredientsOfOneChunk() {
+        //given
+        IngredientDTO aqua = new IngredientDTO().setId(2L).setInci("Aqua").setTradeName("Water");
+        ingredientDictionary.replaceAll(List.of(ing, aqua));
+        IngredientDTO water = new IngredientDTO().setId(3L).setInci("Water").setTradeName("Water 3");
+        IngredientDTO renamedAqua = new IngredientDTO().setId(2L).setInci("Aqua").setTradeName("Aqua 2");
+
+        //when
+        ingredientDictionary.onImported(new IngredientsImportedEvent(List.of(water, renamedAqua)));
+
+        //then
+        IngredientDictionary.Snapshot after = ingredientDictionary.snapshot();
+        assertThat(after.findByNormalizedName("water").getId()).isEqualTo(3L);
+        assertThat(after.findByNormalizedName("aqua2").getId()).isEqualTo(2L);
+        assertThat(after.complete("water", 10)).containsExactly("Water", "Water 3");
+    }
+
+    @Test
+    void onImported_addsWholeChunkInOneSnapshot() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing));
+        long version = ingredientDictionary.snapshot().version();
+        IngredientDTO aqua = new IngredientDTO().setId(2L).setInci("Aqua").setTradeName("Water");
+        IngredientDTO glycerin = new IngredientDTO().setId(3L).setInci("Glycerin").setTradeName("Glycerine");
+
+        //when
+        ingredientDictionary.onImported(new IngredientsImportedEvent(List.of(aqua, glycerin)));
+
+        //then
+        IngredientDictionary.Snapshot after = ingredientDictionary.snapshot();
+        assertThat(after.version()).isEqualTo(version + 1);
+        assertThat(after.size()).isEqualTo(3);
+        assertThat(after.findByNormalizedName("water")).isEqualTo(aqua);
+        assertThat(after.findByNormalizedName("glycerine")).isEqualTo(glycerin);
+        verify(eventPublisher).publishEvent(new IngredientDictionaryChangedEvent(
+                after.version(), Set.of("aqua", "water", "glycerin", "glycerine")));
+    }
+
+    @Test
+    void onDeleted_removesIngredient() {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing));
+
+        //when
+        ingredientDictionary.onDeleted(new IngredientDeletedEvent(ing.getId()));
+
+        //then
+        assertThat(ingredientDictionary.snapshot().size()).isZero();
+        assertThat(ingredientDictionary.snapshot().findByNormalizedName("tradename")).isNull();
+        verify(eventPublisher).publishEvent(new IngredientDictionaryChangedEvent(
+                ingredientDictionary.snapshot().version(), Set.of("inciname", "tradename", "othername")));
+    }
+
+    @Test
+    void indexes_areRebuiltInBackgroundAfterSave() throws InterruptedException {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing));
+        assertThat(ingredientDictionary.snapshot().indexesReady()).isTrue();
+
+        //when
+        ingredientDictionary.onSaved(new IngredientSavedEvent(
+                new IngredientDTO().setId(2L).setInci("Glycerin").setTradeName("Glycerine")));
+
+        //then
+        // до окончания сборки снимок отвечает прежними индексами, поиск по ним не ломается
+        IngredientDictionary.Snapshot snapshot = ingredientDictionary.snapshot();
+        assertThat(snapshot.matcher().findAll("Trade-Name")).hasSize(1);
+        for (int i = 0; i < 500 && !snapshot.indexesReady(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(snapshot.indexesReady()).isTrue();
+        assertThat(snapshot.matcher().findAll("Aqua, Glycerin")).extracting(AhoCorasickMatcher.Match::normalizedName)
+                .containsExactly("glycerin");
+        assertThat(snapshot.trigramIndex().search("glycerne", 3, Long.MAX_VALUE)).contains("glycerine", "glycerin");
+    }
+
+    @Test
+    void changesAfterBackgroundBuild_keepEarlierChanges() throws InterruptedException {
+        //given
+        ingredientDictionary.replaceAll(List.of(ing));
+        IngredientDTO glycerin = new IngredientDTO().setId(2L).setInci("Glycerin").setTradeName("Glycerine");
+        ingredientDictionary.onSaved(new IngredientSavedEvent(glycerin));
+        IngredientDictionary.Snapshot built = ingredientDictionary.snapshot();
+        for (int i = 0; i < 500 && !built.indexesReady(); i++) {
+            Thread.sleep(10);
+        }
+
+        //when
+        ingredientDictionary.onDeleted(new IngredientDeletedEvent(ing.getId()));
+
+        //then
+        // фоновая сборка влила изменения в основу таблиц: ни прежний, ни новый снимок их не теряют
+        assertThat(built.findByNormalizedName("glycerin").getId()).isEqualTo(2L);
+        assertThat(built.findByNormalizedName("inciname")).isNotNull();
+        IngredientDictionary.Snapshot after = ingredientDictionary.snapshot();
+        assertThat(after.findByNormalizedName("glycerine").getId()).isEqualTo(2L);
+        assertThat(after.findByNormalizedName("inciname")).isNull();
+        assertThat(after.findById(1L)).isNull();
+        assertThat(after.size()).isEqualTo(1);
+    }
+
+    @Test
+    void prefixIndex_isMergedAfterSaveAndDelete() {
+        //given
+        IngredientDTO other = new IngredientDTO().setId(2L).setInci("Trade Secret").setTradeName("Secret");
+        ingredientDictionary.replaceAll(List.of(ing, other));
+        assertThat(ingredientDictionary.snapshot().complete("trade", 10))
+                .containsExactly("Trade-Name", "Trade Secret");
+
+        //when
+        ingredientDictionary.onSaved(new IngredientSavedEvent(
+                new IngredientDTO().setId(ing.getId()).setInci("Tradewinds").setTradeName("Trade-Name")));
+        ingredientDictionary.onDeleted(new IngredientDeletedEvent(other.getId()));
+
+        //then
+        IngredientDictionary.Snapshot snapshot = ingredientDictionary.snapshot();
+        assertThat(snapshot.complete("trade", 10)).containsExactly("Trade-Name", "Tradewinds");
+        assertThat(snapshot.complete("inci", 10)).isEmpty();
+        assertThat(snapshot.prefixIndex().size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LayeredMapTest {
+
+    @Test
+    void builder_overridesAndRemovesBaseKeysWithoutChangingOriginal() {
+        //given
+        LayeredMap<String, Integer> original = LayeredMap.of(new HashMap<>(Map.of("a", 1, "b", 2)));
+
+        //when
+        LayeredMap<String, Integer> changed = original.toBuilder().put("a", 10).remove("b").put("c", 3).build();
+
+        //then
+        assertThat(original.get("a")).isEqualTo(1);
+        assertThat(original.get("b")).isEqualTo(2);
+        assertThat(original.size()).isEqualTo(2);
+        assertThat(changed.get("a")).isEqualTo(10);
+        assertThat(changed.containsKey("b")).isFalse();
+        assertThat(changed.get("c")).isEqualTo(3);
+        assertThat(changed.size()).isEqualTo(2);
+        Map<String, Integer> entries = new HashMap<>();
+        changed.forEach(entries::put);
+        assertThat(entries).isEqualTo(Map.of("a", 10, "c", 3));
+    }
+
+    @Test
+    void compact_keepsContentAndEmptiesOverlay() {
+        //given
+        LayeredMap<String, Integer> changed = LayeredMap.of(new HashMap<>(Map.of("a", 1, "b", 2)))
+                .toBuilder().remove("a").put("c", 3).build();
+
+        //when
+        LayeredMap<String, Integer> compacted = changed.compact();
+
+        //then
+        assertThat(compacted.overlaySize()).isZero();
+        assertThat(compacted.containsKey("a")).isFalse();
+        assertThat(compacted.get("b")).isEqualTo(2);
+        assertThat(compacted.get("c")).isEqualTo(3);
+        assertThat(compacted.size()).isEqualTo(2);
+    }
+
+    @Test
+    void rebase_keepsOnlyChangesMadeAfterCompactedVersion() {
+        //given
+        LayeredMap<String, Integer> from = LayeredMap.of(new HashMap<>(Map.of("a", 1, "b", 2)))
+                .toBuilder().put("a", 10).remove("b").build();
+        LayeredMap<String, Integer> compacted = from.compact();
+        LayeredMap<String, Integer> newer = from.toBuilder().put("b", 20).put("d", 4).build();
+
+        //when
+        LayeredMap<String, Integer> rebased = newer.rebase(from, compacted);
+
+        //then
+        assertThat(rebased.overlaySize()).isEqualTo(2);
+        assertThat(rebased.get("a")).isEqualTo(10);
+        assertThat(rebased.get("b")).isEqualTo(20);
+        assertThat(rebased.get("d")).isEqualTo(4);
+        assertThat(rebased.size()).isEqualTo(3);
+    }
+}
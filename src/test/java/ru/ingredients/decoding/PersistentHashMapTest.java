@@ -0,0 +1,100 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentHashMapTest {
+
+    @Test
+    void putAndRemove_leaveOriginalUnchanged() {
+        //given
+        PersistentHashMap<String, Integer> original = PersistentHashMap.<String, Integer>empty().put("a", 1).put("b", 2);
+
+        //when
+        PersistentHashMap<String, Integer> changed = original.put("a", 10).remove("b").put("c", 3);
+
+        //then
+        assertThat(original.get("a")).isEqualTo(1);
+        assertThat(original.get("b")).isEqualTo(2);
+        assertThat(original.containsKey("c")).isFalse();
+        assertThat(original.size()).isEqualTo(2);
+        assertThat(changed.get("a")).isEqualTo(10);
+        assertThat(changed.containsKey("b")).isFalse();
+        assertThat(changed.get("c")).isEqualTo(3);
+        assertThat(changed.size()).isEqualTo(2);
+    }
+
+    @Test
+    void builder_doesNotChangeMapsBuiltBefore() {
+        //given
+        PersistentHashMap.Builder<Integer, Integer> builder = PersistentHashMap.<Integer, Integer>empty().toBuilder();
+        for (int i = 0; i < 1000; i++) builder.put(i, i);
+        PersistentHashMap<Integer, Integer> first = builder.build();
+
+        //when
+        for (int i = 0; i < 1000; i += 2) builder.remove(i);
+        builder.put(1, -1);
+        PersistentHashMap<Integer, Integer> second = builder.build();
+
+        //then
+        assertThat(first.size()).isEqualTo(1000);
+        assertThat(first.get(0)).isZero();
+        assertThat(first.get(1)).isEqualTo(1);
+        assertThat(second.size()).isEqualTo(500);
+        assertThat(second.containsKey(0)).isFalse();
+        assertThat(second.get(1)).isEqualTo(-1);
+    }
+
+    @Test
+    void keysWithSameHash_areKeptApart() {
+        //given
+        // "Aa" и "BB" - разные строки с одинаковым hashCode
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty()
+                .put("Aa", 1).put("BB", 2).put("C", 3);
+
+        //when
+        PersistentHashMap<String, Integer> removed = map.remove("Aa");
+
+        //then
+        assertThat(map.get("Aa")).isEqualTo(1);
+        assertThat(map.get("BB")).isEqualTo(2);
+        assertThat(removed.containsKey("Aa")).isFalse();
+        assertThat(removed.get("BB")).isEqualTo(2);
+        assertThat(removed.get("C")).isEqualTo(3);
+        assertThat(removed.size()).isEqualTo(2);
+    }
+
+    @Test
+    void randomChanges_matchHashMap() {
+        //given
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+
+        //when
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+
+        //then
+        Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (int key = 0; key < 5_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+    }
+}
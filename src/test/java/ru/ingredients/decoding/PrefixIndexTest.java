@@ -0,0 +1,142 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixIndexTest {
+
+    private final PrefixIndex index = PrefixIndex.build(
+            List.of("aqua", "glycerin", "glycerine", "glycerylstearate", "titaniumdioxide", "оксидцинка"));
+
+    @Test
+    void complete_returnsKeysInOrder() {
+        //when
+        List<String> result = index.complete("glycer", 10);
+
+        //then
+        assertThat(result).containsExactly("glycerin", "glycerine", "glycerylstearate");
+    }
+
+    @Test
+    void complete_respectsLimit() {
+        //when
+        List<String> result = index.complete("glycer", 2);
+
+        //then
+        assertThat(result).containsExactly("glycerin", "glycerine");
+    }
+
+    @Test
+    void complete_returnsEmptyForUnknownOrEmptyPrefix() {
+        //then
+        assertThat(index.complete("zinc", 10)).isEmpty();
+        assertThat(index.complete("", 10)).isEmpty();
+        assertThat(PrefixIndex.EMPTY.complete("aqua", 10)).isEmpty();
+    }
+
+    @Test
+    void complete_findsKeysAcrossBlocks() {
+        //given
+        List<String> keys = IntStream.range(0, 1000).mapToObj(i -> String.format("name%04d", i)).toList();
+        PrefixIndex large = PrefixIndex.build(keys);
+
+        //when
+        List<String> result = large.complete("name049", 20);
+
+        //then
+        assertThat(large.size()).isEqualTo(1000);
+        assertThat(result).containsExactlyElementsOf(keys.subList(490, 500));
+        assertThat(large.complete("name0999", 5)).containsExactly("name0999");
+        assertThat(large.complete("name0000", 5)).containsExactly("name0000");
+    }
+
+    @Test
+    void update_mergesAddedAndRemovesDeletedKeys() {
+        //given
+        Set<String> next = Set.of("aqua", "glycerin", "glycerine", "glycerylstearate", "titaniumdioxide", "glycol");
+
+        //when
+        PrefixIndex updated = index.update(Set.of("оксидцинка", "glycol"), next::contains);
+
+        //then
+        assertThat(updated.complete("glyc", 10)).containsExactly("glycerin", "glycerine", "glycerylstearate", "glycol");
+        assertThat(updated.complete("оксид", 10)).isEmpty();
+        assertThat(updated.size()).isEqualTo(6);
+        // прежний индекс не меняется
+        assertThat(index.complete("оксид", 10)).containsExactly("оксидцинка");
+    }
+
+    @Test
+    void update_splitsGrownBlocksAndDropsEmptiedOnes() {
+        //given
+        List<String> keys = IntStream.range(0, 100).mapToObj(i -> String.format("name%03d", i * 10)).toList();
+        PrefixIndex large = PrefixIndex.build(keys);
+        // в первый блок добавляем вдвое больше ключей, чем в нем помещается, второй удаляем целиком,
+        // ключ меньше всех и больше всех попадают в крайние блоки
+        Set<String> changed = new TreeSet<>();
+        IntStream.range(0, 2 * PrefixIndex.BLOCK).forEach(i -> changed.add(String.format("name%03d", i * 5 + 1)));
+        changed.addAll(keys.subList(PrefixIndex.BLOCK, 2 * PrefixIndex.BLOCK));
+        changed.add("a");
+        changed.add("zzz");
+        Set<String> next = new TreeSet<>(keys);
+        next.addAll(changed);
+        keys.subList(PrefixIndex.BLOCK, 2 * PrefixIndex.BLOCK).forEach(next::remove);
+
+        //when
+        PrefixIndex updated = large.update(changed, next::contains);
+
+        //then
+        assertThat(updated.size()).isEqualTo(next.size());
+        assertThat(updated.complete("name", next.size())).containsExactlyElementsOf(
+                next.stream().filter(k -> k.startsWith("name")).toList());
+        assertThat(updated.complete("a", 5)).containsExactly("a");
+        assertThat(updated.complete("z", 5)).containsExactly("zzz");
+        assertThat(PrefixIndex.EMPTY.update(Set.of("aqua"), k -> true).complete("aq", 5)).containsExactly("aqua");
+    }
+
+    @Test
+    void update_mergesUnderfullNeighbourBlocks() {
+        //given
+        List<String> keys = IntStream.range(0, 10 * PrefixIndex.BLOCK).mapToObj(i -> String.format("name%04d", i)).toList();
+        Set<String> remaining = new TreeSet<>(keys);
+        PrefixIndex oneByOne = PrefixIndex.build(keys);
+        PrefixIndex inOneUpdate = PrefixIndex.build(keys);
+
+        //when
+        // удаляем по одному ключу, как при удалении ингредиентов, оставляя каждый восьмой
+        for (int i = 0; i < keys.size(); i++) {
+            if (i % 8 == 0) continue;
+            remaining.remove(keys.get(i));
+            oneByOne = oneByOne.update(Set.of(keys.get(i)), remaining::contains);
+        }
+        inOneUpdate = inOneUpdate.update(Set.copyOf(keys), remaining::contains);
+
+        //then
+        // 40 ключей в блоках до 32: соседние блоки вместе не помещаются в один, поэтому блоков не больше трех
+        for (PrefixIndex updated : List.of(oneByOne, inOneUpdate)) {
+            assertThat(updated.size()).isEqualTo(remaining.size());
+            assertThat(updated.blockCount()).isLessThanOrEqualTo(3);
+            assertThat(updated.complete("name", remaining.size())).containsExactlyElementsOf(remaining);
+        }
+    }
+
+    @Test
+    void build_storesSortedNamesCompactly() {
+        //given
+        List<String> keys = IntStream.range(0, 100_000).mapToObj(i -> "ingredientname" + i).toList();
+        long rawBytes = keys.stream().mapToLong(k -> 2L * k.getBytes(StandardCharsets.UTF_8).length).sum();
+
+        //when
+        PrefixIndex large = PrefixIndex.build(keys);
+
+        //then
+        assertThat(large.sizeInBytes()).isLessThan(rawBytes / 3);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.ingredients.decoding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final TrigramIndex index = new TrigramIndex(
+            List.of("aqua", "glycerin", "glycerine", "titaniumdioxide", "sunfloweroil", "оксидцинка"));
+
+    @ParameterizedTest
+    @CsvSource({
+            "aqva, aqua",
+            "titaniumdioxid, titaniumdioxide",
+            "sunflowreoil, sunfloweroil",
+            "оксидцынка, оксидцинка"
+    })
+    void search_findsNamesWithTypos(String query, String expected) {
+        //when
+        List<String> result = index.search(query, 3, NO_DEADLINE);
+
+        //then
+        assertThat(result).containsExactly(expected);
+    }
+
+    @Test
+    void search_ranksByDistance() {
+        //when
+        List<String> result = index.search("glycerin", 3, NO_DEADLINE);
+
+        //then
+        assertThat(result).containsExactly("glycerin", "glycerine");
+    }
+
+    @Test
+    void search_respectsLimit() {
+        //when
+        List<String> result = index.search("glycerine", 1, NO_DEADLINE);
+
+        //then
+        assertThat(result).containsExactly("glycerine");
+    }
+
+    @Test
+    void search_returnsEmptyForDistantQuery() {
+        //when
+        List<String> result = index.search("panthenol", 3, NO_DEADLINE);
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void search_stopsAtDeadline() {
+        //when
+        List<String> result = index.search("aqva", 3, System.nanoTime() - 1);
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void search_returnsEmptyForEmptyDictionary() {
+        //given
+        TrigramIndex empty = new TrigramIndex(List.of());
+
+        //when
+        List<String> result = empty.search("aqua", 3, NO_DEADLINE);
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void distance_isBoundedByMax() {
+        //when //then
+        assertThat(TrigramIndex.distance("kitten", "sitting", 3)).isEqualTo(3);
+        assertThat(TrigramIndex.distance("kitten", "sitting", 1)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.ingredients.ingredient;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogVersionTest {
+
+    private final CatalogVersion catalogVersion = new CatalogVersion();
+
+    @Test
+    void changes_advanceEtagAndLastModified() {
+        //given
+        String etag = catalogVersion.etag();
+        long lastModified = catalogVersion.lastModified();
+
+        //when
+        catalogVersion.onSaved(new IngredientSavedEvent(new IngredientDTO().setId(1L)));
+        String savedEtag = catalogVersion.etag();
+        long savedLastModified = catalogVersion.lastModified();
+        catalogVersion.onDeleted(new IngredientDeletedEvent(1L));
+
+        //then
+        assertThat(savedEtag).isNotEqualTo(etag);
+        assertThat(catalogVersion.etag()).isNotEqualTo(savedEtag);
+        // изменения в одну и ту же секунду все равно различимы по If-Modified-Since
+        assertThat(savedLastModified).isGreaterThanOrEqualTo(lastModified + 1000);
+        assertThat(catalogVersion.lastModified()).isGreaterThanOrEqualTo(savedLastModified + 1000);
+        assertThat(catalogVersion.lastModified() % 1000).isZero();
+    }
+}
@@ -3,9 +3,11 @@ package ru.ingredients.ingredient;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -13,17 +15,25 @@ import ru.ingredients.category.CategoryDTO;
 import ru.ingredients.category.CategoryService;
 import ru.ingredients.config.WebSecurityConfig;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = IngredientController.class)
-@Import(WebSecurityConfig.class)
+@Import({WebSecurityConfig.class, CatalogVersion.class})
 class IngredientControllerTest {
 
     @Autowired
@@ -35,21 +45,262 @@ class IngredientControllerTest {
     @MockitoBean
     private CategoryService categoryService;
 
+    @MockitoBean
+    private IngredientImporter ingredientImporter;
+
+    @MockitoBean
+    private IngredientExporter ingredientExporter;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
     @Test
     void getAllIngredients() throws Exception {
         //given
-        IngredientDTO ing1 = new IngredientDTO().setId(1L).setInci("inci1").setTradeName("trade1");
-        IngredientDTO ing2 = new IngredientDTO().setId(2L).setInci("inci2").setTradeName("trade2");
-        List<IngredientDTO> ingredients = List.of(ing1, ing2);
-        when(ingredientService.getAllIngredients()).thenReturn(ingredients);
+        IngredientSummary ing1 = new IngredientSummary(1L, "trade1", "inci1");
+        IngredientSummary ing2 = new IngredientSummary(2L, "trade2", "inci2");
+        List<IngredientSummary> ingredients = List.of(ing1, ing2);
+        IngredientCursor next = IngredientCursor.after(ing2);
+        when(ingredientService.getIngredientsPage(null, IngredientService.DEFAULT_PAGE_SIZE))
+                .thenReturn(new IngredientPage(ingredients, next));
 
         //when //then
         mockMvc.perform(get("/ingredients"))
                 .andExpect(status().isOk())
                 .andExpect(view().name("ingredient/ingredients"))
-                .andExpect(model().attribute("ingredients", ingredients));
+                .andExpect(model().attribute("ingredients", ingredients))
+                .andExpect(model().attribute("next", next.encode()))
+                .andExpect(model().attribute("firstPage", true));
+
+        verify(ingredientService).getIngredientsPage(null, IngredientService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Test
+    void getAllIngredients_continuesAfterCursor() throws Exception {
+        //given
+        IngredientCursor cursor = new IngredientCursor("Торговое: имя", 7L);
+        IngredientSummary ing = new IngredientSummary(8L, "Торговое: имя", "inci");
+        when(ingredientService.getIngredientsPage(cursor, 10)).thenReturn(new IngredientPage(List.of(ing), null));
+
+        //when //then
+        mockMvc.perform(get("/ingredients").param("after", cursor.encode()).param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("ingredients", List.of(ing)))
+                .andExpect(model().attributeDoesNotExist("next"))
+                .andExpect(model().attribute("firstPage", false));
+
+        verify(ingredientService).getIngredientsPage(cursor, 10);
+    }
+
+    @Test
+    void getAllIngredients_setsValidatorsAndPublicCacheControlForAnonymous() throws Exception {
+        //given
+        when(ingredientService.getIngredientsPage(null, IngredientService.DEFAULT_PAGE_SIZE))
+                .thenReturn(new IngredientPage(List.of(), null));
+
+        //when //then
+        mockMvc.perform(get("/ingredients"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", catalogVersion.etag()))
+                .andExpect(header().dateValue("Last-Modified", catalogVersion.lastModified()))
+                .andExpect(header().string("Cache-Control", "max-age=60, public"))
+                .andExpect(header().string("Vary", containsString("Cookie")));
+    }
+
+    @Test
+    void getAllIngredients_returnsNotModifiedWithoutTouchingService() throws Exception {
+        //when //then
+        mockMvc.perform(get("/ingredients").header("If-None-Match", catalogVersion.etag()))
+                .andExpect(status().isNotModified());
+
+        verifyNoInteractions(ingredientService);
+    }
+
+    @Test
+    void getIngredient_usesRowUpdatedAtAsValidators() throws Exception {
+        //given
+        Instant updatedAt = Instant.parse("2026-01-02T03:04:05.123456Z");
+        when(ingredientService.getUpdatedAt(1L)).thenReturn(Optional.of(updatedAt));
+        when(ingredientService.getIngredientById(1L)).thenReturn(new IngredientDTO().setId(1L));
+
+        //when
+        String etag = mockMvc.perform(get("/ingredients/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().dateValue("Last-Modified", updatedAt.toEpochMilli()))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //then
+        mockMvc.perform(get("/ingredients/1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/ingredients/1").header("If-Modified-Since", updatedAt.toEpochMilli()))
+                .andExpect(status().isNotModified());
+        // изменения других ингредиентов страницу не сбрасывают, изменение строки - сбрасывает
+        catalogVersion.onDeleted(new IngredientDeletedEvent(2L));
+        mockMvc.perform(get("/ingredients/1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        when(ingredientService.getUpdatedAt(1L)).thenReturn(Optional.of(updatedAt.plusMillis(1)));
+        mockMvc.perform(get("/ingredients/1").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        verify(ingredientService, times(2)).getIngredientById(1L);
+    }
+
+    @Test
+    void getAllIngredients_rendersAgainAfterCatalogChange() throws Exception {
+        //given
+        String etag = catalogVersion.etag();
+        catalogVersion.onDeleted(new IngredientDeletedEvent(1L));
+        when(ingredientService.getIngredientsPage(null, IngredientService.DEFAULT_PAGE_SIZE))
+                .thenReturn(new IngredientPage(List.of(), null));
+
+        //when //then
+        mockMvc.perform(get("/ingredients").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", catalogVersion.etag()));
+    }
+
+    @Test
+    @WithMockUser()
+    void getAllIngredients_isNotCachedForAuthenticated() throws Exception {
+        //given
+        when(ingredientService.getIngredientsPage(null, IngredientService.DEFAULT_PAGE_SIZE))
+                .thenReturn(new IngredientPage(List.of(), null));
+
+        //when //then
+        mockMvc.perform(get("/ingredients").header("If-None-Match", catalogVersion.etag()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(header().string("Cache-Control", "no-cache, private"));
+    }
+
+    @Test
+    void searchIngredients() throws Exception {
+        //given
+        IngredientSearchPage page = new IngredientSearchPage(
+                List.of(new IngredientSearchHit(1L, "trade", "inci", "<mark>фильтр</mark>")), 1, true);
+        when(ingredientService.searchIngredients("фильтр", 1)).thenReturn(page);
+
+        //when //then
+        mockMvc.perform(get("/ingredients/search").param("q", "фильтр").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("ingredient/search"))
+                .andExpect(model().attribute("query", "фильтр"))
+                .andExpect(model().attribute("result", page))
+                .andExpect(content().string(containsString("<mark>фильтр</mark>")));
+
+        verify(ingredientService).searchIngredients("фильтр", 1);
+    }
+
+    @Test
+    @WithMockUser()
+    void importIngredients_returnsReport() throws Exception {
+        //given
+        IngredientImportResult result = new IngredientImportResult(1, List.of(new IngredientImportError(2, "Ошибка")));
+        when(ingredientImporter.importCsv(any(), eq(';'))).thenReturn(result);
+        MockMultipartFile file = new MockMultipartFile("file", "ingredients.csv", "text/csv",
+                "inci;trade_name\nAqua;Water\n".getBytes(StandardCharsets.UTF_8));
+
+        //when //then
+        mockMvc.perform(multipart("/ingredients/import").file(file).param("delimiter", ";").with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"imported\":1,\"errors\":[{\"row\":2,\"message\":\"Ошибка\"}]}"));
+    }
+
+    @Test
+    @WithMockUser()
+    void importIngredients_readsJsonByExtension() throws Exception {
+        //given
+        when(ingredientImporter.importJson(any())).thenReturn(new IngredientImportResult(0, List.of()));
+        MockMultipartFile file = new MockMultipartFile("file", "ingredients.json", "application/json",
+                "[]".getBytes(StandardCharsets.UTF_8));
+
+        //when //then
+        mockMvc.perform(multipart("/ingredients/import").file(file).with(csrf()))
+                .andExpect(status().isOk());
+
+        verify(ingredientImporter).importJson(any());
+    }
+
+    @Test
+    @WithMockUser()
+    void importIngredients_rejectsFileWithoutRequiredColumns() throws Exception {
+        //given
+        when(ingredientImporter.importCsv(any(), eq(','))).thenThrow(new IllegalArgumentException("В файле нет колонки inci"));
+        MockMultipartFile file = new MockMultipartFile("file", "ingredients.csv", "text/csv", new byte[0]);
+
+        //when //then
+        mockMvc.perform(multipart("/ingredients/import").file(file).with(csrf()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importIngredients_requiresAuthentication() throws Exception {
+        //given
+        MockMultipartFile file = new MockMultipartFile("file", "ingredients.csv", "text/csv", new byte[0]);
+
+        //when //then
+        mockMvc.perform(multipart("/ingredients/import").file(file).with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        verifyNoInteractions(ingredientImporter);
+    }
+
+    @Test
+    @WithMockUser()
+    void exportIngredients_writesCsvAttachment() throws Exception {
+        //given
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("id,inci\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(ingredientExporter).exportCsv(any());
+
+        //when //then
+        mockMvc.perform(get("/ingredients/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"ingredients.csv\""))
+                .andExpect(content().string("id,inci\n"));
+    }
+
+    @Test
+    @WithMockUser()
+    void exportIngredients_gzipsJson() throws Exception {
+        //given
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("[]".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(ingredientExporter).exportJson(any());
+
+        //when
+        byte[] body = mockMvc.perform(get("/ingredients/export").param("format", "json").param("gzip", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/gzip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"ingredients.json.gz\""))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        //then
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("[]");
+        }
+    }
+
+    @Test
+    @WithMockUser()
+    void exportIngredients_rejectsUnknownFormat() throws Exception {
+        //when //then
+        mockMvc.perform(get("/ingredients/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(ingredientExporter);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"!!!", "YWJj", "Ong"})
+    void getAllIngredients_rejectsBrokenCursor(String after) throws Exception {
+        //when //then
+        mockMvc.perform(get("/ingredients").param("after", after))
+                .andExpect(status().isBadRequest());
 
-        verify(ingredientService).getAllIngredients();
+        verifyNoInteractions(ingredientService);
     }
 
     @Test
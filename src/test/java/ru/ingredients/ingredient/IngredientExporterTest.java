@@ -0,0 +1,138 @@
+package ru.ingredients.ingredient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.ingredients.category.Category;
+import ru.ingredients.category.CategoryDirectory;
+import ru.ingredients.category.CategoryMapperImpl;
+import ru.ingredients.category.CategoryService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({IngredientExporter.class, CategoryMapperImpl.class, CategoryService.class, CategoryDirectory.class,
+        ObjectMapper.class})
+class IngredientExporterTest {
+
+    @Autowired
+    private IngredientExporter ingredientExporter;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Category category;
+    private Ingredient aqua;
+    private Ingredient glycerin;
+
+    @BeforeEach
+    void setUp() {
+        ingredientRepository.deleteAll();
+        category = em.persist(new Category().setName("Растворители"));
+        aqua = em.persist(new Ingredient().setInci("Aqua").setTradeName("Water").setDescription("Вода, \"чистая\"")
+                .setOtherNames(Set.of("H2O", "Eau")).setCategories(Set.of(category)));
+        glycerin = em.persist(new Ingredient().setInci("Glycerin").setTradeName("Glycerine"));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void exportCsv_writesOneRowPerIngredientInIdOrder() throws IOException {
+        //given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //when
+        ingredientExporter.exportCsv(out);
+
+        //then
+        assertThat(out.toString(StandardCharsets.UTF_8).lines()).containsExactly(
+                "id,inci,trade_name,description,other_names,category_ids,categories",
+                aqua.getId() + ",Aqua,Water,\"Вода, \"\"чистая\"\"\",Eau; H2O," + category.getId() + ",Растворители",
+                glycerin.getId() + ",Glycerin,Glycerine,,,,");
+    }
+
+    @Test
+    void exportJson_writesArrayInImportFormat() throws IOException {
+        //given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //when
+        ingredientExporter.exportJson(out);
+
+        //then
+        JsonNode result = objectMapper.readTree(out.toByteArray());
+        assertThat(result).hasSize(2);
+        JsonNode first = result.get(0);
+        assertThat(first.get("id").asLong()).isEqualTo(aqua.getId());
+        assertThat(first.get("tradeName").asText()).isEqualTo("Water");
+        assertThat(first.get("otherNames")).extracting(JsonNode::asText).containsExactly("Eau", "H2O");
+        assertThat(first.get("categories").get(0).get("name").asText()).isEqualTo("Растворители");
+        assertThat(result.get(1).get("otherNames")).isEmpty();
+    }
+
+    // запускается задачей largeTest с кучей 128 МБ: findAll() на таком каталоге заканчивается OutOfMemoryError
+    @Test
+    @Tag("large")
+    void exportCsv_streamsMillionsOfRowsInFixedHeap() throws IOException {
+        //given
+        int rows = 2_000_000;
+        jdbcTemplate.update("""
+                INSERT INTO ingredient (id, inci, trade_name, description)
+                SELECT g, 'Inci ' || g, 'Trade name ' || g, repeat('описание ', 20)
+                FROM generate_series(1000000000, 1000000000 + ? - 1) g
+                """, rows);
+        jdbcTemplate.update("""
+                INSERT INTO ingredient_other_names (ingredient_id, other_names)
+                SELECT g, 'Other ' || g FROM generate_series(1000000000, 1000000000 + ? - 1) g
+                """, rows);
+        LineCounter out = new LineCounter();
+
+        //when
+        ingredientExporter.exportCsv(out);
+
+        //then
+        assertThat(out.lines).isEqualTo(rows + 3L);
+    }
+
+    // считает строки и ничего не хранит
+    private static class LineCounter extends OutputStream {
+
+        private long lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') lines++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') lines++;
+            }
+        }
+    }
+}
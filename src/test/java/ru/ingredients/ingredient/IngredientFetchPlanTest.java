@@ -0,0 +1,111 @@
+package ru.ingredients.ingredient;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import ru.ingredients.category.Category;
+import ru.ingredients.category.CategoryMapperImpl;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// сколько запросов к БД уходит на одну страницу: ленивые коллекции не должны догружаться при сборке DTO
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({IngredientService.class, IngredientMapperImpl.class, CategoryMapperImpl.class})
+class IngredientFetchPlanTest {
+
+    @Autowired
+    private IngredientService ingredientService;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Ingredient ing;
+
+    @BeforeEach
+    void setUp() {
+        ingredientRepository.deleteAll();
+        Category cat1 = em.persist(new Category().setName("cat1"));
+        Category cat2 = em.persist(new Category().setName("cat2"));
+        ing = em.persist(new Ingredient().setInci("inci").setTradeName("trade")
+                .setOtherNames(Set.of("other1", "other2")).setCategories(Set.of(cat1, cat2)));
+        em.flush();
+        em.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getIngredientById_issuesSingleStatement() {
+        //when
+        IngredientDTO result = ingredientService.getIngredientById(ing.getId());
+
+        //then
+        assertThat(result.getOtherNames()).containsExactlyInAnyOrder("other1", "other2");
+        assertThat(result.getCategories()).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getIngredientsByAllNames_issuesSingleStatement() {
+        //when
+        List<IngredientDTO> result = ingredientService.getIngredientsByAllNames(List.of("other1"));
+
+        //then
+        assertThat(result).singleElement().satisfies(dto -> assertThat(dto.getCategories()).hasSize(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void equalsAndHashCode_doNotLoadLazyCollections() {
+        //given
+        Ingredient loaded = ingredientRepository.findById(ing.getId()).orElseThrow();
+        Ingredient reference = em.getEntityManager().getReference(Ingredient.class, ing.getId());
+        statistics.clear();
+
+        //when
+        Set<Ingredient> set = new HashSet<>(Set.of(loaded));
+
+        //then
+        assertThat(loaded).isEqualTo(ing).isEqualTo(reference);
+        assertThat(set).contains(ing);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(new Ingredient()).isNotEqualTo(new Ingredient());
+    }
+
+    @Test
+    void getUpdatedAt_changesOnSaveEvenIfOnlyNamesChange() {
+        //given
+        IngredientDTO dto = ingredientService.getIngredientById(ing.getId());
+        Instant before = ingredientService.getUpdatedAt(ing.getId()).orElseThrow();
+
+        //when
+        ingredientService.saveIngredient(dto.setOtherNames(Set.of("other1", "other3")));
+        em.clear();
+
+        //then
+        assertThat(ingredientService.getUpdatedAt(ing.getId())).hasValueSatisfying(
+                updatedAt -> assertThat(updatedAt).isAfter(before));
+        assertThat(ingredientService.getUpdatedAt(-1L)).isEmpty();
+    }
+}
@@ -0,0 +1,205 @@
+package ru.ingredients.ingredient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ingredients.category.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// порции пишутся в своих транзакциях, поэтому тест работает без общей транзакции и чистит данные сам
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({IngredientImporter.class, CategoryMapperImpl.class, CategoryService.class, CategoryDirectory.class,
+        ObjectMapper.class})
+class IngredientImporterTest {
+
+    @Autowired
+    private IngredientImporter ingredientImporter;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        ingredientRepository.deleteAll();
+        category = categoryRepository.save(new Category().setName("cat"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingredientRepository.deleteAll();
+        categoryRepository.delete(category);
+    }
+
+    @Test
+    void importCsv_savesRowsWithNamesAndCategories() throws IOException {
+        //given
+        String csv = """
+                inci,trade_name,description,other_names,category_ids
+                Aqua,Water,Solvent,H2O; Eau,%d
+                Glycerin,Glycerine,,,
+                """.formatted(category.getId());
+
+        //when
+        IngredientImportResult result = ingredientImporter.importCsv(new StringReader(csv), ',');
+
+        //then
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.errors()).isEmpty();
+        List<Ingredient> saved = ingredientRepository.findAllWithOtherNamesAndCategories();
+        assertThat(saved).extracting(Ingredient::getTradeName).containsExactlyInAnyOrder("Water", "Glycerine");
+        Ingredient water = saved.stream().filter(i -> i.getTradeName().equals("Water")).findFirst().orElseThrow();
+        assertThat(water.getOtherNames()).containsExactlyInAnyOrder("H2O", "Eau");
+        assertThat(water.getCategories()).extracting(Category::getId).containsExactly(category.getId());
+        assertThat(ingredientRepository.findByAllNames(List.of("eau"))).hasSize(1);
+    }
+
+    @Test
+    void importCsv_reportsRowErrorsAndKeepsValidRows() throws IOException {
+        //given
+        Ingredient existing = ingredientRepository.save(new Ingredient().setInci("Aqua").setTradeName("Water"));
+        String csv = """
+                inci,trade_name,other_names,category_ids
+                Glycerin,Glycerine,,
+                Aqua,Something,,
+                Other,Other-trade,glycerin,
+                ,Empty,,
+                Panthenol,D-Panthenol,,999999
+                Niacinamide,Vitamin B3,,x
+                """;
+
+        //when
+        IngredientImportResult result = ingredientImporter.importCsv(new StringReader(csv), ',');
+
+        //then
+        assertThat(result.imported()).isEqualTo(1);
+        assertThat(result.errors()).containsExactly(
+                new IngredientImportError(2, "Перепроверьте все указанные наименования, есть совпадения с id " + existing.getId()),
+                new IngredientImportError(3, "Перепроверьте все указанные наименования, есть совпадения со строкой 1"),
+                new IngredientImportError(4, "Название не может быть пустым"),
+                new IngredientImportError(5, "Категория с id 999999 не найдена"),
+                new IngredientImportError(6, "Некорректный id категории: x"));
+        assertThat(ingredientRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void importCsv_checksDuplicatesAcrossChunks() throws IOException {
+        //given
+        int rows = IngredientImporter.CHUNK_SIZE + 5;
+        String csv = "inci,trade_name\n" + IntStream.range(0, rows)
+                .mapToObj(i -> "inci" + i + ",trade" + i)
+                .collect(Collectors.joining("\n")) + "\ninci0,again\n";
+
+        //when
+        IngredientImportResult result = ingredientImporter.importCsv(new StringReader(csv), ',');
+
+        //then
+        assertThat(result.imported()).isEqualTo(rows);
+        // первая порция уже сохранена, поэтому совпадение находится в каталоге
+        assertThat(result.errors()).singleElement().satisfies(error -> {
+            assertThat(error.row()).isEqualTo(rows + 1);
+            assertThat(error.message()).startsWith("Перепроверьте все указанные наименования, есть совпадения с id ");
+        });
+        assertThat(ingredientRepository.count()).isEqualTo(rows);
+    }
+
+    @Test
+    void importCsv_rejectsTooLongValuesBeforeInsert() throws IOException {
+        //given
+        String csv = """
+                inci,trade_name,description
+                Glycerin,Glycerine,
+                %s,Long,
+                Aqua,Water,%s
+                Panthenol,D-Panthenol,
+                """.formatted("a".repeat(IngredientImporter.NAME_MAX_LENGTH + 1),
+                "d".repeat(IngredientImporter.DESCRIPTION_MAX_LENGTH + 1));
+
+        //when
+        IngredientImportResult result = ingredientImporter.importCsv(new StringReader(csv), ',');
+
+        //then
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.errors()).containsExactly(
+                new IngredientImportError(2, "Наименование длиннее 255 символов"),
+                new IngredientImportError(3, "Описание длиннее 32600 символов"));
+    }
+
+    @Test
+    void importCsv_rejectsOnlyRowsTheDatabaseRefuses() throws IOException {
+        //given
+        // нулевой символ Postgres не принимает в тексте: пакет падает на вставке, а не на проверке
+        String csv = IntStream.range(0, 10)
+                .mapToObj(i -> i == 6 ? "inci6,trade\u00006" : "inci" + i + ",trade" + i)
+                .collect(Collectors.joining("\n", "inci,trade_name\n", "\n"));
+
+        //when
+        IngredientImportResult result = ingredientImporter.importCsv(new StringReader(csv), ',');
+
+        //then
+        assertThat(result.imported()).isEqualTo(9);
+        assertThat(result.errors()).singleElement().satisfies(error -> {
+            assertThat(error.row()).isEqualTo(7);
+            assertThat(error.message()).startsWith("Не удалось сохранить: ");
+        });
+        assertThat(ingredientRepository.count()).isEqualTo(9);
+        assertThat(ingredientRepository.findByAllNames(List.of("inci6"))).isEmpty();
+    }
+
+    @Test
+    void importCsv_throwsWhenRequiredColumnIsMissing() {
+        //when //then
+        assertThatThrownBy(() -> ingredientImporter.importCsv(new StringReader("inci\nAqua\n"), ','))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("В файле нет колонки trade_name");
+        assertThat(ingredientRepository.count()).isZero();
+    }
+
+    @Test
+    void importJson_savesValidRecordsAndReportsBrokenOnes() throws IOException {
+        //given
+        String json = """
+                [
+                  {"id": 100500, "inci": "Aqua", "tradeName": "Water", "otherNames": ["Eau"],
+                   "categories": [{"id": %d}]},
+                  {"inci": "Glycerin", "tradeName": "Glycerine", "otherNames": "not a list"},
+                  {"inci": "Eau", "tradeName": "Another water"}
+                ]
+                """.formatted(category.getId());
+
+        //when
+        IngredientImportResult result = ingredientImporter.importJson(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        //then
+        assertThat(result.imported()).isEqualTo(1);
+        assertThat(result.errors()).extracting(IngredientImportError::row).containsExactly(2L, 3L);
+        assertThat(result.errors().get(0).message()).startsWith("Некорректная запись");
+        Ingredient saved = ingredientRepository.findAllWithOtherNamesAndCategories().get(0);
+        assertThat(saved.getId()).isNotEqualTo(100500L);
+        assertThat(saved.getCategories()).extracting(Category::getId).containsExactly(category.getId());
+    }
+}
@@ -0,0 +1,90 @@
+package ru.ingredients.ingredient;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.ingredients.category.Category;
+import ru.ingredients.category.CategoryRepository;
+import ru.ingredients.category.CategoryService;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// страница целиком, включая шаблон: без open-in-view ленивая коллекция в шаблоне упала бы, а не догрузилась
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser
+class IngredientPageStatementsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Category category;
+
+    private Ingredient ing;
+
+    @BeforeEach
+    void setUp() {
+        category = categoryRepository.save(new Category().setName("Page statements category"));
+        ing = ingredientRepository.save(new Ingredient().setInci("Page statements inci").setTradeName("Page statements trade")
+                .setOtherNames(Set.of("Page statements other")).setCategories(Set.of(category)));
+        // список категорий формы берется из кэша запросов, считаем только запросы за ингредиентом
+        categoryService.getAllCategories();
+        entityManagerFactory.getCache().evict(Ingredient.class);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingredientRepository.delete(ing);
+        categoryRepository.delete(category);
+    }
+
+    @Test
+    void ingredientPage_issuesSingleStatement() throws Exception {
+        //when //then
+        mockMvc.perform(get("/ingredients/{id}", ing.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Page statements other")))
+                .andExpect(content().string(containsString("Page statements category")));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void editPage_issuesSingleStatement() throws Exception {
+        //when //then
+        mockMvc.perform(get("/ingredients/{id}/edit", ing.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Page statements other")))
+                .andExpect(content().string(containsString("Page statements category")));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
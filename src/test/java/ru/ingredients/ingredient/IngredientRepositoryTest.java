@@ -1,5 +1,6 @@
 package ru.ingredients.ingredient;
 
+import org.hibernate.engine.spi.SessionImplementor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -10,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
 
 import java.util.List;
 import java.util.Set;
@@ -85,4 +87,129 @@ class IngredientRepositoryTest {
         //then
         assertThat(result).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    void persist_storesNormalizedNames() {
+        //given
+        Ingredient ing = new Ingredient()
+                .setInci("INCI Name (with parentheses)")
+                .setTradeName("Trade-Name")
+                .setOtherNames(Set.of("Other name", "()"));
+
+        //when
+        em.persistAndFlush(ing);
+        em.clear();
+
+        //then
+        Ingredient result = em.find(Ingredient.class, ing.getId());
+        assertThat(result.getNormalizedNames()).containsExactlyInAnyOrder("inciname", "tradename", "othername");
+    }
+
+    @Test
+    void findByAllNames_usesUpdatedNormalizedNames() {
+        //given
+        Ingredient ing = new Ingredient().setInci("old inci").setTradeName("trade");
+        em.persistAndFlush(ing);
+        em.clear();
+
+        Ingredient changed = new Ingredient().setId(ing.getId()).setInci("new inci").setTradeName("trade");
+        changed.updateNormalizedNames();
+
+        //when
+        ingredientRepository.saveAndFlush(changed);
+        em.clear();
+
+        //then
+        assertThat(ingredientRepository.findByAllNames(List.of("oldinci"))).isEmpty();
+        assertThat(ingredientRepository.findByAllNames(List.of("newinci"))).extracting(Ingredient::getId)
+                .containsExactly(ing.getId());
+    }
+
+    @Test
+    void findPageAfter_walksListInTradeNameAndIdOrder() {
+        //given
+        Ingredient b1 = em.persist(new Ingredient().setInci("inci b1").setTradeName("b1"));
+        Ingredient a = em.persist(new Ingredient().setInci("inci a").setTradeName("a"));
+        Ingredient b2 = em.persist(new Ingredient().setInci("inci b2").setTradeName("b2"));
+        Ingredient c = em.persist(new Ingredient().setInci("inci c").setTradeName("c"));
+        em.flush();
+
+        //when
+        List<IngredientSummary> first = ingredientRepository.findFirstPage(Limit.of(2));
+        List<IngredientSummary> second = ingredientRepository.findPageAfter(
+                first.get(1).tradeName(), first.get(1).id(), Limit.of(2));
+        List<IngredientSummary> last = ingredientRepository.findPageAfter(
+                second.get(1).tradeName(), second.get(1).id(), Limit.of(2));
+
+        //then
+        assertThat(first).extracting(IngredientSummary::id).containsExactly(a.getId(), b1.getId());
+        assertThat(second).extracting(IngredientSummary::id).containsExactly(b2.getId(), c.getId());
+        assertThat(last).isEmpty();
+    }
+
+    @Test
+    void findFirstPage_selectsOnlyListColumnsWithoutManagingEntities() {
+        //given
+        Ingredient ing = em.persistAndFlush(new Ingredient().setInci("inci").setTradeName("trade")
+                .setDescription("длинное описание").setOtherNames(Set.of("other")));
+        em.clear();
+
+        //when
+        List<IngredientSummary> result = ingredientRepository.findFirstPage(Limit.of(10));
+
+        //then
+        assertThat(result).containsExactly(new IngredientSummary(ing.getId(), "trade", "inci"));
+        assertThat(em.getEntityManager().unwrap(SessionImplementor.class)
+                .getPersistenceContextInternal().getNumberOfManagedEntities()).isZero();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "фильтр, Поглощает лучи и работает как фильтр", //RussianStemming
+            "лучей, Поглощает лучи и работает как фильтр", //RussianWordForm
+            "absorbing, Absorbs UVB radiation", //EnglishStemming
+            "filters, UV filter with broad protection" //EnglishPlural
+    })
+    void search_matchesWordFormsInDescription(String query, String description) {
+        //given
+        Ingredient ing = em.persistAndFlush(new Ingredient().setInci("inci").setTradeName("trade")
+                .setDescription(description));
+
+        //when
+        List<IngredientSearchRow> result = ingredientRepository.search(query, "", 10, 0);
+
+        //then
+        assertThat(result).extracting(IngredientSearchRow::getId).containsExactly(ing.getId());
+    }
+
+    @Test
+    void search_ranksNameMatchesAboveDescriptionMatches() {
+        //given
+        Ingredient inDescription = em.persist(new Ingredient().setInci("inci 1").setTradeName("Первый")
+                .setDescription("Похож на оксид цинка"));
+        Ingredient inName = em.persist(new Ingredient().setInci("Zinc Oxide").setTradeName("Оксид цинка"));
+        em.persist(new Ingredient().setInci("inci 2").setTradeName("Другой").setDescription("Без совпадений"));
+        em.flush();
+
+        //when
+        List<IngredientSearchRow> result = ingredientRepository.search("оксид цинка", "", 10, 0);
+
+        //then
+        assertThat(result).extracting(IngredientSearchRow::getId).containsExactly(inName.getId(), inDescription.getId());
+    }
+
+    @Test
+    void search_marksMatchesInSnippet() {
+        //given
+        em.persistAndFlush(new Ingredient().setInci("inci").setTradeName("trade")
+                .setDescription("Фотостабильный фильтр широкого спектра"));
+
+        //when
+        List<IngredientSearchRow> result = ingredientRepository.search("фильтры", IngredientService.HEADLINE_OPTIONS, 10, 0);
+
+        //then
+        assertThat(result).singleElement().extracting(IngredientSearchRow::getSnippet)
+                .isEqualTo("Фотостабильный " + IngredientService.MATCH_START + "фильтр" + IngredientService.MATCH_END
+                        + " широкого спектра");
+    }
+}
@@ -0,0 +1,92 @@
+package ru.ingredients.ingredient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ingredients.category.CategoryMapperImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// сохранения идут из разных потоков в своих транзакциях, поэтому тест работает без общей транзакции и чистит данные сам
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({IngredientService.class, IngredientMapperImpl.class, CategoryMapperImpl.class})
+class IngredientServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private IngredientService ingredientService;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        ingredientRepository.deleteAll();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        ingredientRepository.deleteAll();
+    }
+
+    @Test
+    void saveIngredient_concurrentSavesWithSameNameKeepOnlyOne() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            //given
+            // у всех потоков разные inci и trade name, совпадает только одно из других наименований
+            String sharedName = "Shared name " + round;
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<IngredientDTO>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                IngredientDTO dto = new IngredientDTO()
+                        .setInci("inci " + round + "-" + i)
+                        .setTradeName("trade " + round + "-" + i)
+                        .setOtherNames(Set.of(sharedName.toUpperCase()));
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return ingredientService.saveIngredient(dto);
+                }));
+            }
+
+            //when
+            start.countDown();
+            List<IngredientDTO> saved = new ArrayList<>();
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<IngredientDTO> result : results) {
+                try {
+                    saved.add(result.get(30, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+
+            //then
+            assertThat(saved).hasSize(1);
+            assertThat(failures).hasSize(THREADS - 1).allSatisfy(failure -> assertThat(failure)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Перепроверьте все указанные наименования, есть совпадения с id " + saved.get(0).getId()));
+            assertThat(ingredientService.getIngredientsByAllNames(List.of(sharedName)))
+                    .extracting(IngredientDTO::getId).containsExactly(saved.get(0).getId());
+        }
+        assertThat(ingredientRepository.count()).isEqualTo(ROUNDS);
+    }
+}
@@ -1,14 +1,20 @@
 package ru.ingredients.ingredient;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
@@ -24,31 +30,117 @@ class IngredientServiceTest {
     @Mock
     private IngredientRepository ingredientRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private final IngredientMapper ingredientMapper = new IngredientMapperImpl();
 
     private IngredientService ingredientService;
 
     @BeforeEach
     void setUp() {
-        ingredientService = new IngredientService(ingredientRepository, ingredientMapper);
+        ingredientService = new IngredientService(ingredientRepository, ingredientMapper, eventPublisher);
     }
 
     @Test
-    void getAllIngredients() {
+    void getIngredientsPage_returnsFirstPageWithCursorOfLastItem() {
         //given
-        Ingredient ing1 = new Ingredient().setId(1L).setInci("ing1");
-        Ingredient ing2 = new Ingredient().setId(2L).setInci("ing2");
-        IngredientDTO dto1 = ingredientMapper.toMinDto(ing1);
-        IngredientDTO dto2 = ingredientMapper.toMinDto(ing2);
+        IngredientSummary ing1 = new IngredientSummary(1L, "a", "ing1");
+        IngredientSummary ing2 = new IngredientSummary(2L, "b", "ing2");
+        IngredientSummary ing3 = new IngredientSummary(3L, "c", "ing3");
+
+        when(ingredientRepository.findFirstPage(Limit.of(3))).thenReturn(List.of(ing1, ing2, ing3));
+
+        //when
+        IngredientPage result = ingredientService.getIngredientsPage(null, 2);
+
+        //then
+        assertThat(result.ingredients()).containsExactly(ing1, ing2);
+        assertThat(result.next()).isEqualTo(new IngredientCursor("b", 2L));
+        verify(ingredientRepository).findFirstPage(Limit.of(3));
+    }
+
+    @Test
+    void getIngredientsPage_returnsLastPageWithoutCursor() {
+        //given
+        IngredientCursor after = new IngredientCursor("b", 2L);
+        IngredientSummary ing = new IngredientSummary(3L, "c", "ing3");
 
-        when(ingredientRepository.findAll()).thenReturn(List.of(ing1, ing2));
+        when(ingredientRepository.findPageAfter("b", 2L, Limit.of(3))).thenReturn(List.of(ing));
+
+        //when
+        IngredientPage result = ingredientService.getIngredientsPage(after, 2);
+
+        //then
+        assertThat(result.ingredients()).containsExactly(ing);
+        assertThat(result.next()).isNull();
+    }
 
+    @ParameterizedTest
+    @CsvSource({"0, 2", "-5, 2", "100000, " + (IngredientService.MAX_PAGE_SIZE + 1)})
+    void getIngredientsPage_capsPageSize(int size, int expectedLimit) {
         //when
-        List<IngredientDTO> result = ingredientService.getAllIngredients();
+        ingredientService.getIngredientsPage(null, size);
 
         //then
-        assertThat(result).containsExactlyInAnyOrderElementsOf(List.of(dto1, dto2));
-        verify(ingredientRepository).findAll();
+        verify(ingredientRepository).findFirstPage(Limit.of(expectedLimit));
+    }
+
+    @Test
+    void searchIngredients_escapesSnippetAndMarksMatches() {
+        //given
+        IngredientSearchRow row = mock(IngredientSearchRow.class);
+        when(row.getId()).thenReturn(1L);
+        when(row.getSnippet()).thenReturn("<b>\u0002фильтр\u0003</b> & ко");
+        when(ingredientRepository.search(eq("фильтр"), anyString(), eq(IngredientService.SEARCH_PAGE_SIZE + 1), eq(0)))
+                .thenReturn(List.of(row));
+
+        //when
+        IngredientSearchPage result = ingredientService.searchIngredients("фильтр", 0);
+
+        //then
+        assertThat(result.hits()).singleElement().extracting(IngredientSearchHit::snippetHtml)
+                .isEqualTo("&lt;b&gt;<mark>фильтр</mark>&lt;/b&gt; &amp; ко");
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"-1, 0", "3, 60", "1000, " + IngredientService.MAX_SEARCH_PAGE * IngredientService.SEARCH_PAGE_SIZE})
+    void searchIngredients_capsPageNumber(int page, int expectedOffset) {
+        //when
+        ingredientService.searchIngredients("фильтр", page);
+
+        //then
+        verify(ingredientRepository).search(eq("фильтр"), anyString(), eq(IngredientService.SEARCH_PAGE_SIZE + 1),
+                eq(expectedOffset));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = " ")
+    void searchIngredients_returnsEmptyPageForBlankQuery(String query) {
+        //when
+        IngredientSearchPage result = ingredientService.searchIngredients(query, 0);
+
+        //then
+        assertThat(result).isEqualTo(IngredientSearchPage.EMPTY);
+        verifyNoInteractions(ingredientRepository);
+    }
+
+    @Test
+    void getAllIngredientsWithNames() {
+        //given
+        Ingredient ing = new Ingredient().setId(1L).setInci("ing").setOtherNames(Set.of("other"));
+        IngredientDTO dto = ingredientMapper.toDto(ing);
+
+        when(ingredientRepository.findAllWithOtherNamesAndCategories()).thenReturn(List.of(ing));
+
+        //when
+        List<IngredientDTO> result = ingredientService.getAllIngredientsWithNames();
+
+        //then
+        assertThat(result).containsExactly(dto);
+        verify(ingredientRepository).findAllWithOtherNamesAndCategories();
     }
 
     @Test
@@ -57,26 +149,26 @@ class IngredientServiceTest {
         long id = 1L;
         Ingredient ing = new Ingredient().setId(id).setInci("ing");
         IngredientDTO dto = ingredientMapper.toDto(ing);
-        when(ingredientRepository.findById(id)).thenReturn(Optional.of(ing));
+        when(ingredientRepository.findWithOtherNamesAndCategoriesById(id)).thenReturn(Optional.of(ing));
 
         //when
         IngredientDTO result = ingredientService.getIngredientById(id);
 
         //then
         assertThat(result).isEqualTo(dto);
-        verify(ingredientRepository).findById(id);
+        verify(ingredientRepository).findWithOtherNamesAndCategoriesById(id);
     }
 
     @Test
     void getIngredientById_throwsNoSuchElementExceptionWhenNotFound() {
         //given
         long id = 0L;
-        when(ingredientRepository.findById(id)).thenReturn(Optional.empty());
+        when(ingredientRepository.findWithOtherNamesAndCategoriesById(id)).thenReturn(Optional.empty());
 
         //when //then
         assertThatThrownBy(() -> ingredientService.getIngredientById(id))
                 .isInstanceOf(NoSuchElementException.class);
-        verify(ingredientRepository).findById(id);
+        verify(ingredientRepository).findWithOtherNamesAndCategoriesById(id);
     }
 
     @Test
@@ -89,7 +181,7 @@ class IngredientServiceTest {
         ingredientService.saveIngredient(dto);
 
         //then
-        verify(ingredientRepository).save(ing);
+        verify(ingredientRepository).saveAndFlush(ing);
     }
 
     @Test
@@ -98,36 +190,47 @@ class IngredientServiceTest {
         Ingredient ing = new Ingredient().setId(1L).setInci("ing");
         IngredientDTO dto = ingredientMapper.toDto(ing);
 
-        when(ingredientRepository.save(ing)).thenReturn(ing);
+        when(ingredientRepository.saveAndFlush(ing)).thenReturn(ing);
 
         //when
         IngredientDTO result = ingredientService.saveIngredient(dto);
 
         //then
-        verify(ingredientRepository).save(ing);
+        verify(ingredientRepository).saveAndFlush(ing);
         assertThat(result).isEqualTo(dto);
     }
 
+    @Test
+    void saveIngredient_publishesSavedEvent() {
+        //given
+        Ingredient ing = new Ingredient().setId(1L).setInci("ing");
+        IngredientDTO dto = ingredientMapper.toDto(ing);
+
+        when(ingredientRepository.saveAndFlush(ing)).thenReturn(ing);
+
+        //when
+        ingredientService.saveIngredient(dto);
+
+        //then
+        verify(eventPublisher).publishEvent(new IngredientSavedEvent(dto));
+    }
+
     @Test
     void saveIngredient_whenEditingExisting() {
         //given
-        Ingredient existingIng = new Ingredient()
-                .setId(1L)
-                .setInci("inci")
-                .setTradeName("trade");
         IngredientDTO dtoWithChanges = new IngredientDTO()
                 .setId(1L)
                 .setInci("inci")
                 .setTradeName("changed trade");
         Ingredient savedIng = ingredientMapper.toEntity(dtoWithChanges);
 
-        when(ingredientRepository.findByAllNames(anyList())).thenReturn(List.of(existingIng));
-
         //when
         ingredientService.saveIngredient(dtoWithChanges);
 
         //then
-        verify(ingredientRepository).save(savedIng);
+        verify(ingredientRepository).saveAndFlush(savedIng);
+        // совпадения проверяет база, лишнего запроса перед сохранением нет
+        verify(ingredientRepository, never()).findByAllNames(anyList());
     }
 
     @ParameterizedTest
@@ -147,14 +250,14 @@ class IngredientServiceTest {
                 .setTradeName(trade)
                 .setOtherNames(Set.of(other));
 
+        when(ingredientRepository.saveAndFlush(any())).thenThrow(normalizedNameViolation());
         when(ingredientRepository.findByAllNames(anyList())).thenReturn(List.of(existingIng));
 
         //when //then
         assertThatThrownBy(() -> ingredientService.saveIngredient(dtoToSave))
                 .isInstanceOf(IllegalArgumentException.class)
-                .hasMessageContaining(existingIng.getId().toString());
-        verify(ingredientRepository).findByAllNames(anyList());
-        verify(ingredientRepository, never()).save(any());
+                .hasMessage("Перепроверьте все указанные наименования, есть совпадения с id " + existingIng.getId());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -172,14 +275,32 @@ class IngredientServiceTest {
                 .setInci(existingIng1.getInci())
                 .setTradeName(existingIng2.getTradeName());
 
+        when(ingredientRepository.saveAndFlush(any())).thenThrow(normalizedNameViolation());
         when(ingredientRepository.findByAllNames(anyList())).thenReturn(List.of(existingIng1, existingIng2));
 
         //when //then
         assertThatThrownBy(() -> ingredientService.saveIngredient(dtoToSave))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContainingAll(existingIng1.getId().toString(), existingIng2.getId().toString());
-        verify(ingredientRepository).findByAllNames(anyList());
-        verify(ingredientRepository, never()).save(any());
+    }
+
+    @Test
+    void saveIngredient_rethrowsOtherIntegrityViolations() {
+        //given
+        DataIntegrityViolationException otherViolation = new DataIntegrityViolationException("fk",
+                new ConstraintViolationException("fk", new SQLException(), "ingredient_category_category_id_fkey"));
+        IngredientDTO dtoToSave = new IngredientDTO().setInci("inci").setTradeName("trade");
+
+        when(ingredientRepository.saveAndFlush(any())).thenThrow(otherViolation);
+
+        //when //then
+        assertThatThrownBy(() -> ingredientService.saveIngredient(dtoToSave)).isSameAs(otherViolation);
+        verify(ingredientRepository, never()).findByAllNames(anyList());
+    }
+
+    private static DataIntegrityViolationException normalizedNameViolation() {
+        return new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", new SQLException(), Ingredient.NORMALIZED_NAME_CONSTRAINT));
     }
 
     @Test
@@ -194,6 +315,7 @@ class IngredientServiceTest {
         //then
         verify(ingredientRepository).existsById(id);
         verify(ingredientRepository).deleteById(id);
+        verify(eventPublisher).publishEvent(new IngredientDeletedEvent(id));
     }
 
     @Test
@@ -207,6 +329,7 @@ class IngredientServiceTest {
                 .isInstanceOf(NoSuchElementException.class);
         verify(ingredientRepository).existsById(id);
         verify(ingredientRepository, never()).deleteById(id);
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
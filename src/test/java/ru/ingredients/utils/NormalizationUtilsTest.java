@@ -1,13 +1,25 @@
 package ru.ingredients.utils;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 class NormalizationUtilsTest {
 
+    // прежняя реализация на регулярных выражениях, с которой сравнивается normalize
+    private static String regexNormalize(String s) {
+        return s == null ? "" : s
+                .replaceAll("\\(.+?\\)", "")
+                .replaceAll("[^a-zA-Zа-яА-Я0-9]+", "")
+                .toLowerCase();
+    }
+
     @ParameterizedTest
     @CsvSource({
             "name (with parentheses), name",
@@ -34,4 +46,73 @@ class NormalizationUtilsTest {
         assertThat(result).isEqualTo("");
     }
 
-}
\ No newline at end of file
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "()", "(a)", "((a)", "(a))", "()a)", "(a(b)c)", "( )", "(\n)", "(a\r\nb)", "a(b\u2028c)d",
+            "(", ")", "(((", "a (b", "(a) (b) (c", "Ёлка ёж", "ÀÉÎ", "x\uD83D\uDE00y", "(\uD83D\uDE00)",
+            "INCI Name (old)", "Aqua/Water", "C12-15 Alkyl Benzoate", "  Спирт  (96%)  "
+    })
+    void normalize_matchesRegexImplementation(String input) {
+        //when
+        String result = NormalizationUtils.normalize(input);
+
+        //then
+        assertThat(result).isEqualTo(regexNormalize(input));
+    }
+
+    @Test
+    void normalize_matchesRegexImplementationOnRandomInput() {
+        //given
+        String alphabet = "aZя Ё0(()))\n\r\u0085-,.;ёß\uD83D\uDE00";
+        Random random = new Random(42);
+
+        for (int run = 0; run < 100_000; run++) {
+            char[] chars = new char[random.nextInt(2_000) < 1 ? 1_500 : random.nextInt(20)];
+            for (int i = 0; i < chars.length; i++) chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+            String input = new String(chars);
+
+            //when
+            String result = NormalizationUtils.normalize(input);
+
+            //then
+            assertThat(result).as("normalize(\"%s\")", input).isEqualTo(regexNormalize(input));
+        }
+    }
+
+    @Test
+    void normalize_returnsSameInstanceForNormalizedString() {
+        //given
+        String input = "alreadynormalized123";
+
+        //when
+        String result = NormalizationUtils.normalize(input);
+
+        //then
+        assertThat(result).isSameAs(input);
+    }
+
+    @Test
+    void normalize_writesIntoCallerBuffer() {
+        //given
+        char[] dst = "xx__________".toCharArray();
+
+        //when
+        int length = NormalizationUtils.normalize("Na-me (x) 1", dst, 2);
+
+        //then
+        assertThat(length).isEqualTo(5);
+        assertThat(new String(dst, 0, 2 + length)).isEqualTo("xxname1");
+    }
+
+    @Test
+    void normalize_appendsToStringBuilder() {
+        //given
+        StringBuilder out = new StringBuilder("prefix:");
+
+        //when
+        NormalizationUtils.normalize("Имя (old) ИМЯ", out);
+
+        //then
+        assertThat(out.toString()).isEqualTo("prefix:имяимя");
+    }
+}